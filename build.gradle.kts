@@ -2,6 +2,7 @@ plugins {
     java
     application
     id("com.diffplug.spotless") version "8.8.0"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "com.davidconneely"
@@ -17,6 +18,8 @@ java {
     }
 }
 
+// the Vector API row kernel is opt-in at run time (the JVM warns on standard error whenever an
+// incubator module is added), e.g. JAVA_OPTS="--add-modules jdk.incubator.vector"
 application {
     mainClass = "com.davidconneely.triangle.MinTrianglePath"
 }
@@ -27,8 +30,29 @@ dependencies {
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
+// the row kernel in VectorRowKernel uses the incubating Vector API, which is expected, so javac
+// need not warn about it
+tasks.withType<JavaCompile>().configureEach {
+    options.compilerArgs.addAll(
+        listOf("--add-modules", "jdk.incubator.vector", "-Xlint:-incubating")
+    )
+}
+
 tasks.test {
     useJUnitPlatform()
+    jvmArgs("--add-modules", "jdk.incubator.vector")
+}
+
+// the benchmarks in src/jmh are run with: ./gradlew jmh
+// (or a subset, with: ./gradlew jmh -Pjmh.includes=TrianglePathFinderBenchmark)
+jmh {
+    jmhVersion = "1.37"
+    // records the allocation rate and GC time of each benchmark alongside its score
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+    // a 50,000-row triangle of int values, and its copy, take 5GiB each
+    jvmArgsAppend = listOf("--add-modules", "jdk.incubator.vector", "-Xmx16g")
+    providers.gradleProperty("jmh.includes").orNull?.let { includes = listOf(it) }
 }
 
 tasks.jar {
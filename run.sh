@@ -11,14 +11,60 @@ fi
 if [ $# -ne 1 ]; then
     echo "Usage: $0 <triangle-file>"
     echo ""
-    echo "Reads a triangle from the specified file and outputs a minimal path."
+    echo "Reads a triangle (text or binary format) from the specified file and outputs a minimal path."
     exit 1
 fi
 
+# the Vector API row kernel is only used if TRIANGLE_VECTOR=1, as adding its incubator module makes
+# the JVM print a warning on standard error (the scalar row kernel is used otherwise)
+JAVA_OPTS=""
+if [ "$TRIANGLE_VECTOR" = "1" ]; then
+    JAVA_OPTS="--add-modules jdk.incubator.vector"
+fi
+
 INPUT_FILE="$1"
 if [ ! -f "$INPUT_FILE" ]; then
     echo "Error: File '$INPUT_FILE' not found"
     exit 1
 fi
 
-cat "$INPUT_FILE" | java -jar "$JAR_FILE"
+# if a daemon is listening (started with: java -jar "$JAR_FILE" daemon "$TRIANGLE_SOCKET"), ask it
+# to solve the triangle, rather than starting a JVM that has to warm up the solver as well; the
+# request is sent with socat or nc, so that no JVM is started at all, unless neither is installed
+if [ -n "$TRIANGLE_SOCKET" ] && [ -S "$TRIANGLE_SOCKET" ]; then
+    # the daemon's working directory is not ours
+    REQUEST="FILE $(realpath "$INPUT_FILE")"
+    if command -v socat >/dev/null 2>&1; then
+        # wait as long as it takes for the response, not just the default half a second
+        RESPONSE=$(printf '%s\n' "$REQUEST" | socat -t 86400 - UNIX-CONNECT:"$TRIANGLE_SOCKET")
+    elif command -v nc >/dev/null 2>&1; then
+        RESPONSE=$(printf '%s\n' "$REQUEST" | nc -U "$TRIANGLE_SOCKET")
+    else
+        exec java -XX:TieredStopAtLevel=1 -jar "$JAR_FILE" client "$TRIANGLE_SOCKET" "$INPUT_FILE"
+    fi
+    # the response is the exit status and either the path or what went wrong, separated by a tab
+    TAB=$(printf '\t')
+    STATUS="${RESPONSE%%"$TAB"*}"
+    DETAIL="${RESPONSE#*"$TAB"}"
+    case "$STATUS" in
+        "")
+            echo "There was an I/O error:" >&2
+            echo "The daemon closed the connection without responding" >&2
+            exit 74
+            ;;
+        *[!0-9]*)
+            echo "There was an I/O error:" >&2
+            echo "Unexpected response from the daemon: $RESPONSE" >&2
+            exit 74
+            ;;
+    esac
+    if [ "$STATUS" -eq 0 ]; then
+        echo "Minimal path is: $DETAIL"
+    else
+        echo "The daemon could not solve the triangle:" >&2
+        echo "$DETAIL" >&2
+    fi
+    exit "$STATUS"
+fi
+
+java $JAVA_OPTS -jar "$JAR_FILE" "$INPUT_FILE"
@@ -0,0 +1,53 @@
+package com.davidconneely.triangle;
+
+import java.util.SplittableRandom;
+
+/**
+ * Makes the triangles used by the benchmarks. The values are random, but the same from run to run,
+ * so that runs can be compared.
+ */
+final class BenchmarkTriangles {
+  private static final long SEED = 0x5EED;
+
+  /**
+   * The ranges of values benchmarked, one for each width of values the heap storage holds (see
+   * <code>HeapTriangleStorage</code>).
+   */
+  enum ValueRange {
+    BYTE(0, 99),
+    SHORT(-9_999, 9_999),
+    INT(-999_999_999, 999_999_999);
+
+    final int minValue;
+    final int maxValue;
+
+    ValueRange(int minValue, int maxValue) {
+      this.minValue = minValue;
+      this.maxValue = maxValue;
+    }
+  }
+
+  private BenchmarkTriangles() {}
+
+  /**
+   * Returns enough values for the widest row of a triangle of <code>numRows</code> rows. Each row
+   * is made of the first values, so a whole triangle does not have to be held twice.
+   */
+  static int[] makeRowValues(int numRows, ValueRange range) {
+    return new SplittableRandom(SEED).ints(numRows, range.minValue, range.maxValue + 1).toArray();
+  }
+
+  /** Returns a triangle of <code>numRows</code> rows of values in <code>range</code>. */
+  static Triangle makeTriangle(int numRows, ValueRange range) {
+    int[] values = makeRowValues(numRows, range);
+    Triangle t = new Triangle();
+    for (int rowNo = 0; rowNo < numRows; ++rowNo) {
+      // rotate the values from row to row, so that the rows are not all the same
+      int first = values[0];
+      System.arraycopy(values, 1, values, 0, rowNo);
+      values[rowNo] = first;
+      t.addRow(values, rowNo + 1);
+    }
+    return t;
+  }
+}
@@ -0,0 +1,57 @@
+package com.davidconneely.triangle;
+
+import com.davidconneely.triangle.BenchmarkTriangles.ValueRange;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks building a triangle a row at a time, and copying a whole triangle, on the heap. Each
+ * operation builds or copies a whole triangle, so the time for 50,000 rows is for 1.25 billion
+ * values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TriangleBenchmark {
+  @Param({"10", "100", "1000", "10000", "50000"})
+  int numRows;
+
+  @Param({"BYTE", "SHORT", "INT"})
+  ValueRange range;
+
+  private int[] rowValues;
+  private Triangle triangle;
+
+  @Setup
+  public void makeTriangle() {
+    rowValues = BenchmarkTriangles.makeRowValues(numRows, range);
+    triangle = BenchmarkTriangles.makeTriangle(numRows, range);
+  }
+
+  @Benchmark
+  public Triangle addRow() {
+    Triangle t = new Triangle();
+    for (int rowNo = 0; rowNo < numRows; ++rowNo) {
+      t.addRow(rowValues, rowNo + 1);
+    }
+    return t;
+  }
+
+  @Benchmark
+  public Triangle cloneTriangle() {
+    return triangle.clone();
+  }
+}
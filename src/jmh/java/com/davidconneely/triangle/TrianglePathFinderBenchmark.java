@@ -0,0 +1,51 @@
+package com.davidconneely.triangle;
+
+import com.davidconneely.triangle.BenchmarkTriangles.ValueRange;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks finding a minimal path (and its length alone) in a triangle on the heap, with the
+ * default row kernel (see <code>RowKernel</code>). The range of values decides both the width of
+ * the stored values and whether the running totals are <code>int</code> or <code>long</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrianglePathFinderBenchmark {
+  @Param({"10", "100", "1000", "10000", "50000"})
+  int numRows;
+
+  @Param({"BYTE", "SHORT", "INT"})
+  ValueRange range;
+
+  private Triangle triangle;
+
+  @Setup
+  public void makeTriangle() {
+    triangle = BenchmarkTriangles.makeTriangle(numRows, range);
+  }
+
+  @Benchmark
+  public int[] findMinPath() {
+    return TrianglePathFinder.findMinPath(triangle);
+  }
+
+  @Benchmark
+  public long findMinCost() {
+    return TrianglePathFinder.findMinCost(triangle);
+  }
+}
@@ -0,0 +1,74 @@
+package com.davidconneely.triangle;
+
+import com.davidconneely.triangle.BenchmarkTriangles.ValueRange;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks reading a text-format triangle from a file. The file is written once for each size and
+ * range of values, and is likely to be in the operating system's cache while it is read, so this
+ * mostly measures parsing. The sizes stop at 10,000 rows because the text of a 50,000-row triangle
+ * takes several gigabytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TriangleReaderBenchmark {
+  @Param({"10", "100", "1000", "10000"})
+  int numRows;
+
+  @Param({"BYTE", "SHORT", "INT"})
+  ValueRange range;
+
+  private Path file;
+
+  @Setup
+  public void writeFile() throws IOException {
+    file = Files.createTempFile("triangle", ".txt");
+    try (Triangle t = BenchmarkTriangles.makeTriangle(numRows, range);
+        Writer w = Files.newBufferedWriter(file)) {
+      int[] row = new int[numRows];
+      for (int rowNo = 0; rowNo < numRows; ++rowNo) {
+        t.copyRow(rowNo, row);
+        for (int i = 0; i <= rowNo; ++i) {
+          if (i > 0) {
+            w.write(' ');
+          }
+          w.write(Integer.toString(row[i]));
+        }
+        w.write('\n');
+      }
+    }
+  }
+
+  @TearDown
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public Triangle readTriangle() throws IOException {
+    try (InputStream is = Files.newInputStream(file)) {
+      return new TriangleReader(is).readTriangle();
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.davidconneely.triangle;
+
+/**
+ * Keeps track of a minimal path through a triangle that grows a row at a time, so that the path is
+ * always ready without solving the whole triangle again from the new base.
+ *
+ * <p>Each row is added both to the triangle and to a <code>StreamingPathFinder</code>, which works
+ * from the vertex down, so a new row only has to be combined with the running totals of the row
+ * above it: the time taken to add a row is proportional to its length, and the length of a minimal
+ * path is then known straight away. The path itself is retraced from the recorded decisions when it
+ * is asked for, in time proportional to the number of rows. The path is the same one <code>
+ * TrianglePathFinder</code> would find.
+ */
+final class AppendingPathFinder {
+  private final Triangle t;
+  private final StreamingPathFinder finder = new StreamingPathFinder();
+
+  /**
+   * Start with the rows already in <code>t</code>, which must then only be added to through this
+   * finder (rows added to it directly are not noticed).
+   */
+  AppendingPathFinder(Triangle t) {
+    this.t = t;
+    int[] row = new int[t.size()];
+    for (int rowNo = 0; rowNo < t.size(); ++rowNo) {
+      t.copyRow(rowNo, row);
+      finder.addRow(row, rowNo + 1);
+    }
+  }
+
+  /**
+   * Add the first <code>length</code> values of <code>values</code> as a new base row of the
+   * triangle.
+   *
+   * @throws TriangleShapeException If the row is too short or too long.
+   */
+  void addRow(int[] values, int length) {
+    // the finder checks the length before anything is added to either
+    finder.addRow(values, length);
+    t.addRow(values, length);
+  }
+
+  /** Returns the number of rows in the triangle. */
+  int size() {
+    return finder.size();
+  }
+
+  /** Returns the length of a minimal path through the triangle (0 if it is empty). */
+  long minCost() {
+    return finder.minCost();
+  }
+
+  /** Returns the values along a minimal path from vertex to base. */
+  int[] findMinPath() {
+    int[] path = finder.minPathColumns();
+    for (int rowNo = 0; rowNo < path.length; ++rowNo) {
+      path[rowNo] = t.get(rowNo, path[rowNo]);
+    }
+    return path;
+  }
+}
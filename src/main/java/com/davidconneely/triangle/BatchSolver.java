@@ -0,0 +1,237 @@
+package com.davidconneely.triangle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Finds a minimal path in each of many triangle files at once. Each file is read on its own virtual
+ * thread, which waits cheaply on I/O, and the path is then found on a fixed pool of platform
+ * threads, so no more paths are found at a time than there are processors to find them (or the
+ * number of jobs asked for).
+ *
+ * <p>One line is output for each file, in the order the files were given, as soon as it and all the
+ * files before it are done. Each line is the file name, the exit status for that file, and either
+ * the minimal path or what went wrong, separated by tabs:
+ *
+ * <pre>
+ * goodfile1	0	7 + 6 + 3 + 2 = 18
+ * badfile4	65	Failed to add row #4 because value #4 is not a whole number: "splat!"
+ * </pre>
+ *
+ * <p>The exit status for each file is the one <code>MinTrianglePath</code> would exit with for that
+ * file alone. At most {@value #FILES_PER_JOB} files per job are in progress (or done, but waiting
+ * for an earlier file) at a time, so that the triangles held in memory are bounded however many
+ * files there are. Each thread finding paths also keeps its working memory from one file to the
+ * next, but only up to {@value #MAX_RETAINED_WORKSPACE} bytes of it: the working memory for a
+ * bigger triangle is let go of as soon as its path has been found.
+ *
+ * <p>If there is a <code>ResultCache</code>, a file whose contents have been solved before is
+ * neither parsed nor solved again. The cache is only used on a best-effort basis: an entry that
+ * cannot be read is solved again (and written again), and a path that cannot be written to the
+ * cache directory is still output. Either way, the error is counted by the cache.
+ */
+final class BatchSolver implements AutoCloseable {
+  /** The number of files in progress at a time for each thread finding paths. */
+  static final int FILES_PER_JOB = 4;
+
+  /** The most working memory each thread finding paths keeps from one file to the next. */
+  static final long MAX_RETAINED_WORKSPACE = 64L << 20;
+
+  private final ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+  private final ExecutorService solvers;
+
+  /**
+   * The working memory of each thread finding paths, reused from one file to the next, unless it is
+   * more than {@value #MAX_RETAINED_WORKSPACE} bytes.
+   */
+  private final ThreadLocal<SolverWorkspace> workspaces =
+      ThreadLocal.withInitial(SolverWorkspace::new);
+
+  private final int maxInProgress;
+  private final ResultCache cache;
+
+  /** Find up to <code>jobs</code> paths at a time. */
+  BatchSolver(int jobs) {
+    this(jobs, null);
+  }
+
+  /** Find up to <code>jobs</code> paths at a time, remembering them in <code>cache</code>. */
+  BatchSolver(int jobs, ResultCache cache) {
+    this.solvers = Executors.newFixedThreadPool(jobs);
+    this.maxInProgress = jobs * FILES_PER_JOB;
+    this.cache = cache;
+  }
+
+  /**
+   * Returns the files to solve: each of <code>paths</code> that is a file, the files in each of
+   * <code>paths</code> that is a directory (sorted by name, not including subdirectories), followed
+   * by the files listed in <code>manifest</code> (if not null), one per line, ignoring blank lines.
+   *
+   * @throws IOException If a directory or the manifest cannot be read.
+   */
+  static List<Path> listFiles(List<Path> paths, Path manifest) throws IOException {
+    List<Path> files = new ArrayList<>();
+    for (Path path : paths) {
+      if (Files.isDirectory(path)) {
+        try (Stream<Path> s = Files.list(path)) {
+          s.filter(Files::isRegularFile).sorted().forEach(files::add);
+        }
+      } else {
+        files.add(path);
+      }
+    }
+    if (manifest != null) {
+      for (String line : Files.readAllLines(manifest)) {
+        if (!line.isBlank()) {
+          files.add(Path.of(line.strip()));
+        }
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Find a minimal path in each of <code>files</code>, and output a line for each of them to <code>
+   * out</code>. Returns the exit status of the first file that could not be solved, or 0 if they
+   * all were.
+   *
+   * @throws InterruptedIOException If interrupted while waiting for a file to be solved.
+   */
+  int solveAll(List<Path> files, PrintStream out) throws InterruptedIOException {
+    int status = 0;
+    Deque<Future<Result>> inProgress = new ArrayDeque<>();
+    try {
+      for (Path file : files) {
+        if (inProgress.size() == maxInProgress) {
+          status = output(inProgress.remove().get(), out, status);
+        }
+        inProgress.add(readers.submit(() -> solve(file)));
+      }
+      while (!inProgress.isEmpty()) {
+        status = output(inProgress.remove().get(), out, status);
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while solving triangles");
+    } catch (ExecutionException ee) {
+      // solve catches everything it expects, so this is a bug
+      throw new IllegalStateException(ee.getCause());
+    } finally {
+      inProgress.forEach(f -> f.cancel(true));
+    }
+    return status;
+  }
+
+  /**
+   * Returns the path in the cache for <code>key</code>, or null if it is not there or unreadable.
+   */
+  private int[] cached(String key) {
+    try {
+      return cache.get(key);
+    } catch (IOException ioe) {
+      cache.recordError();
+      return null;
+    }
+  }
+
+  /** Put the path in the cache, if it can be. */
+  private void cache(String key, int[] path) {
+    try {
+      cache.put(key, path);
+    } catch (IOException ioe) {
+      cache.recordError();
+    }
+  }
+
+  /** Find the path on this (pool) thread, then let go of its working memory if it is too big. */
+  private int[] findMinPath(FrozenTriangle t) {
+    SolverWorkspace workspace = workspaces.get();
+    try {
+      return workspace.findMinPath(t);
+    } finally {
+      workspace.trim(MAX_RETAINED_WORKSPACE);
+    }
+  }
+
+  private static int output(Result result, PrintStream out, int status) {
+    out.println(result.file + "\t" + result.status + "\t" + result.detail);
+    return status != 0 ? status : result.status;
+  }
+
+  /**
+   * Read a file on this (virtual) thread, and find its minimal path on the pool, unless it is in
+   * the cache.
+   */
+  private Result solve(Path file) throws InterruptedException {
+    try {
+      String key = cache == null ? null : ResultCache.key(file);
+      int[] path = key == null ? null : cached(key);
+      if (path == null) {
+        // read on this thread, but solved on one from the pool
+        try (FrozenTriangle t = read(file).freeze()) {
+          path = solvers.submit(() -> findMinPath(t)).get();
+        }
+        if (key != null) {
+          cache(key, path);
+        }
+      }
+      return new Result(file, 0, MinTrianglePath.formatPath(path));
+    } catch (ExecutionException ee) {
+      return failed(file, ee.getCause() instanceof Exception e ? e : ee);
+    } catch (RuntimeException | IOException e) {
+      return failed(file, e);
+    }
+  }
+
+  /** Read a triangle from a file in either format. */
+  static Triangle read(Path file) throws IOException {
+    if (TriangleFile.isBinary(file)) {
+      return TriangleFile.open(file);
+    }
+    try (InputStream is = Files.newInputStream(file)) {
+      return new TriangleReader(is).readTriangle();
+    }
+  }
+
+  private static Result failed(Path file, Exception e) {
+    return new Result(file, MinTrianglePath.exitStatus(e), describe(e));
+  }
+
+  /** Returns what went wrong, on one line with no tabs, whatever is in the exception's message. */
+  static String describe(Exception e) {
+    String message = MinTrianglePath.message(e);
+    return message == null ? e.getClass().getName() : message.replaceAll("\\s", " ");
+  }
+
+  @Override
+  public void close() {
+    readers.shutdownNow();
+    solvers.shutdownNow();
+  }
+
+  /** The line to output for a file. */
+  private static final class Result {
+    final Path file;
+    final int status;
+    final String detail;
+
+    Result(Path file, int status, String detail) {
+      this.file = file;
+      this.status = status;
+      this.detail = detail;
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package com.davidconneely.triangle;
+
+import java.util.Arrays;
+
+/**
+ * Finds the same minimal path as <code>TrianglePathFinder</code>, but in much less working memory,
+ * by doing the backward induction twice.
+ *
+ * <p><code>TrianglePathFinder</code> records one direction bit for every value above the base, so
+ * its working memory grows with the square of the number of rows: an eighth of a byte per value, or
+ * about 2.3GiB for a triangle of 200,000 rows. Instead, the first pass here records nothing but a
+ * copy of the running totals for every <code>interval</code>-th row, the checkpoints. The path is
+ * then retraced from the vertex down one band of <code>interval</code> rows at a time: the
+ * induction is repeated from the checkpoint at the bottom of the band up to its top, recording the
+ * direction bits for that band alone, which are followed down to the next checkpoint.
+ *
+ * <p>Every row is processed twice, so this takes about twice as long. With <code>n</code> rows and
+ * an interval of <code>k</code>, the checkpoints take about <code>4n^2/k</code> bytes and the bits
+ * for one band about <code>kn/8</code> bytes, which are lowest together when <code>k</code> is
+ * <code>sqrt(32n)</code> (see {@linkplain #interval}), taking about <code>1.4n*sqrt(n)</code> bytes
+ * (about 120MiB, rather than 2.3GiB, for 200,000 rows). That is less than the direction bits for
+ * any triangle of more than about 500 rows.
+ *
+ * <p>The running totals are always kept as <code>long</code>s, and rows are not split between
+ * threads.
+ */
+final class CheckpointedPathFinder {
+  private CheckpointedPathFinder() {}
+
+  /**
+   * Returns the values along a minimal path, the same path as <code>TrianglePathFinder.findMinPath
+   * </code> returns, with checkpoints at the {@linkplain #interval} for the size of the triangle.
+   */
+  static int[] findMinPath(TriangleView t) {
+    return findMinPath(t, interval(t.size()));
+  }
+
+  /** Returns a minimal path with checkpoints every <code>interval</code> rows. */
+  static int[] findMinPath(TriangleView t, int interval) {
+    if (interval < 1) {
+      throw new IllegalArgumentException("Checkpoint interval must be positive: " + interval);
+    }
+    int numRows = t.size();
+    if (numRows == 0) {
+      return new int[0];
+    }
+    int lastRowNo = numRows - 1;
+    RowKernel kernel = TrianglePathFinder.KERNEL;
+    int[] values = new int[numRows];
+    long[] totalsBelow = new long[numRows];
+    long[] totals = new long[numRows];
+
+    // the first pass keeps the totals for each row that is a multiple of the
+    // interval, other than the vertex (which is not needed) and the base
+    // (which is just the values)
+    long[][] checkpoints = new long[lastRowNo / interval + 1][];
+    copyBase(t, values, totalsBelow);
+    for (int rowNo = lastRowNo - 1; rowNo >= interval; --rowNo) {
+      t.copyRow(rowNo, values);
+      kernel.processRow(totalsBelow, values, totals, null, 0, 0, rowNo + 1);
+      long[] row = totals;
+      totals = totalsBelow;
+      totalsBelow = row;
+      if (rowNo % interval == 0) {
+        checkpoints[rowNo / interval] = Arrays.copyOf(row, rowNo + 1);
+      }
+    }
+
+    // the second pass redoes each band from the checkpoint below it, and
+    // follows its direction bits (which are indexed from the top of the band)
+    int[] path = new int[numRows];
+    path[0] = t.get(0, 0);
+    int colNo = 0;
+    DirectionBits goRight = new DirectionBits(bandBits(0, Math.min(interval, lastRowNo)));
+    for (int top = 0; top < lastRowNo; top += interval) {
+      int bottom = Math.min(top + interval, lastRowNo);
+      if (bottom == lastRowNo) {
+        copyBase(t, values, totalsBelow);
+      } else {
+        long[] checkpoint = checkpoints[bottom / interval];
+        System.arraycopy(checkpoint, 0, totalsBelow, 0, checkpoint.length);
+        checkpoints[bottom / interval] = null;
+      }
+      long numBits = bandBits(top, bottom);
+      goRight.ensureCapacity(numBits);
+      goRight.clear(numBits);
+      long topOffset = Triangle.rowOffset(top);
+      for (int rowNo = bottom - 1; rowNo >= top; --rowNo) {
+        t.copyRow(rowNo, values);
+        long rowOffset = Triangle.rowOffset(rowNo) - topOffset;
+        kernel.processRow(totalsBelow, values, totals, goRight, rowOffset, 0, rowNo + 1);
+        long[] row = totals;
+        totals = totalsBelow;
+        totalsBelow = row;
+      }
+      for (int rowNo = top + 1; rowNo <= bottom; ++rowNo) {
+        if (goRight.get(Triangle.rowOffset(rowNo - 1) - topOffset + colNo)) {
+          ++colNo;
+        }
+        path[rowNo] = t.get(rowNo, colNo);
+      }
+    }
+    return path;
+  }
+
+  /**
+   * Returns the checkpoint interval that takes the least working memory for a triangle of <code>
+   * numRows</code> rows, <code>sqrt(32*numRows)</code>.
+   */
+  static int interval(int numRows) {
+    return Math.max(1, (int) Math.sqrt(32.0 * numRows));
+  }
+
+  /**
+   * Returns about how many bytes of working memory <code>TrianglePathFinder.findMinPath</code>
+   * takes for a triangle of <code>numRows</code> rows, mostly the direction bits.
+   */
+  static long directBytes(int numRows) {
+    return numRows == 0 ? 0 : Triangle.rowOffset(numRows - 1) / 8 + 16L * numRows;
+  }
+
+  /**
+   * Returns about how many bytes of working memory {@linkplain #findMinPath(TriangleView)} takes
+   * for a triangle of <code>numRows</code> rows: the checkpoints, the bits for one band, and the
+   * rows.
+   */
+  static long checkpointedBytes(int numRows) {
+    if (numRows == 0) {
+      return 0;
+    }
+    int interval = interval(numRows);
+    long checkpoints = 0;
+    for (long rowNo = interval; rowNo < numRows - 1; rowNo += interval) {
+      checkpoints += 8 * (rowNo + 1);
+    }
+    return checkpoints + (long) interval * numRows / 8 + 20L * numRows;
+  }
+
+  /**
+   * Returns whether to find the path with checkpoints, because the working memory <code>
+   * TrianglePathFinder</code> takes for a triangle of <code>numRows</code> rows is more than <code>
+   * memoryBudget</code> bytes, and finding it with checkpoints takes less.
+   */
+  static boolean exceedsBudget(int numRows, long memoryBudget) {
+    long direct = directBytes(numRows);
+    return direct > memoryBudget && checkpointedBytes(numRows) < direct;
+  }
+
+  /**
+   * Returns the number of direction bits for the rows from <code>top</code> to above <code>bottom
+   * </code>.
+   */
+  private static long bandBits(int top, int bottom) {
+    return Triangle.rowOffset(bottom) - Triangle.rowOffset(top);
+  }
+
+  /** Read the base of the triangle into <code>values</code>, and copy it to <code>totals</code>. */
+  private static void copyBase(TriangleView t, int[] values, long[] totals) {
+    int lastRowNo = t.size() - 1;
+    t.copyRow(lastRowNo, values);
+    for (int i = 0; i <= lastRowNo; ++i) {
+      totals[i] = values[i];
+    }
+  }
+}
@@ -0,0 +1,331 @@
+package com.davidconneely.triangle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a text-format triangle from a file using several threads. The file is split into chunks at
+ * line boundaries, and then each chunk is read twice, with all the chunks read at the same time:
+ *
+ * <ol>
+ *   <li>The lines in each chunk are counted, which tells each chunk which row it starts at, and how
+ *       many rows there are in the whole triangle (so the triangle can be allocated in full). If
+ *       the file is too small to hold that many rows, it is instead read by a single <code>
+ *       TriangleReader</code>, which reports the first line that is the wrong length. The longest
+ *       value is also found, which bounds the range of the values, so that the triangle's storage
+ *       can be made wide enough for them all before any of them are stored.
+ *   <li>Each chunk is parsed by its own <code>TriangleReader</code>, which knows the row it starts
+ *       at so it can check the shape of its rows and report line numbers, and the rows are written
+ *       straight into their places in the triangle.
+ * </ol>
+ *
+ * <p>If there are invalid lines in several chunks, the exception for the first of them is thrown,
+ * so the result is the same as reading the file with a single <code>TriangleReader</code>.
+ */
+public final class ChunkedTriangleReader {
+  /** Files smaller than this are not worth splitting up. */
+  static final long MIN_CHUNK_SIZE = 1 << 20;
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private ChunkedTriangleReader() {}
+
+  /**
+   * Read the triangle data from <code>file</code>, using the default charset and the common
+   * fork-join pool.
+   *
+   * @return a constructed <code>Triangle</code> instance.
+   * @throws IOException If an I/O error occurs.
+   * @throws TriangleShapeException If a line of triangle data is too short or too long.
+   * @throws TriangleValueException If a line of triangle data contains an invalid value.
+   */
+  public static Triangle readTriangle(Path file) throws IOException {
+    return readTriangle(file, new Triangle());
+  }
+
+  /** Read the triangle data from <code>file</code>, adding the rows to an empty triangle. */
+  static Triangle readTriangle(Path file, Triangle t) throws IOException {
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    return readTriangle(file, t, pool, chunkSize(file, pool.getParallelism()));
+  }
+
+  /** Split the file into about four chunks per thread, but no smaller than the minimum. */
+  private static long chunkSize(Path file, int parallelism) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return Math.max(MIN_CHUNK_SIZE, channel.size() / (4L * parallelism));
+    }
+  }
+
+  /** Read the triangle data in chunks of about <code>chunkSize</code> bytes on the pool given. */
+  static Triangle readTriangle(Path file, Triangle t, ExecutorService pool, long chunkSize)
+      throws IOException {
+    Charset charset = Charset.defaultCharset();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long[] bounds = chunkBounds(channel, chunkSize);
+      int numChunks = bounds.length - 1;
+
+      List<Callable<ChunkCounts>> counters = new ArrayList<>(numChunks);
+      for (int i = 0; i < numChunks; ++i) {
+        long start = bounds[i];
+        long end = bounds[i + 1];
+        counters.add(() -> countLines(channel, start, end));
+      }
+      List<ChunkCounts> counts = invokeAll(pool, counters);
+
+      long numLines = 0;
+      for (ChunkCounts count : counts) {
+        numLines += count.numLines;
+      }
+      if (!canHoldRows(channel.size(), numLines)) {
+        // the lines cannot all be the right length, so read the file a line at a time, which
+        // finds the first one that is wrong without allocating the whole triangle first
+        new TriangleReader(new ChunkInputStream(channel, 0, channel.size()), charset, 0)
+            .readTriangle(t);
+        return t;
+      }
+      int[] firstRowNos = new int[numChunks + 1];
+      int maxValueLength = 0;
+      for (int i = 0; i < numChunks; ++i) {
+        firstRowNos[i + 1] = firstRowNos[i] + counts.get(i).numLines;
+        maxValueLength = Math.max(maxValueLength, counts.get(i).maxValueLength);
+      }
+      int bound = boundForLength(maxValueLength);
+      t.reserveValueRange(-bound, bound);
+      t.addZeroRows(firstRowNos[numChunks]);
+
+      List<Callable<Integer>> parsers = new ArrayList<>(numChunks);
+      for (int i = 0; i < numChunks; ++i) {
+        long start = bounds[i];
+        long end = bounds[i + 1];
+        int firstRowNo = firstRowNos[i];
+        int endRowNo = firstRowNos[i + 1];
+        parsers.add(
+            () -> {
+              InputStream is = new ChunkInputStream(channel, start, end);
+              TriangleReader tr = new TriangleReader(is, charset, firstRowNo);
+              int[] row = new int[endRowNo];
+              for (int rowNo = firstRowNo; rowNo < endRowNo; ++rowNo) {
+                tr.readRow(row);
+                t.setRow(rowNo, row);
+              }
+              return endRowNo - firstRowNo;
+            });
+      }
+      invokeAll(pool, parsers);
+    }
+    return t;
+  }
+
+  /**
+   * Run the tasks and wait for them all to finish. If any of them failed, rethrow the exception
+   * from the first one that failed (in the order the tasks were given, not the order they ran).
+   */
+  private static <T> List<T> invokeAll(ExecutorService pool, List<Callable<T>> tasks)
+      throws IOException {
+    List<Future<T>> futures;
+    try {
+      futures = pool.invokeAll(tasks);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading triangle", ie);
+    }
+    List<T> results = new ArrayList<>(futures.size());
+    for (Future<T> future : futures) {
+      try {
+        results.add(future.get());
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while reading triangle", ie);
+      } catch (ExecutionException ee) {
+        Throwable cause = ee.getCause();
+        if (cause instanceof IOException ioe) {
+          throw ioe;
+        } else if (cause instanceof UncheckedIOException uioe) {
+          throw uioe.getCause();
+        } else if (cause instanceof RuntimeException re) {
+          throw re;
+        } else if (cause instanceof Error e) {
+          throw e;
+        }
+        throw new IOException(cause);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Returns whether a file of <code>size</code> bytes could hold a triangle of <code>numRows</code>
+   * rows. Each value takes at least one digit and a space or line ending after it (except the last
+   * value, if the file does not end with a line ending).
+   */
+  static boolean canHoldRows(long size, long numRows) {
+    return numRows <= Integer.MAX_VALUE && 2 * Triangle.rowOffset((int) numRows) - 1 <= size;
+  }
+
+  /**
+   * Returns the positions the chunks start at, followed by the size of the file. Each chunk after
+   * the first starts at the beginning of a line, at or after a multiple of <code>chunkSize</code>.
+   */
+  static long[] chunkBounds(FileChannel channel, long chunkSize) throws IOException {
+    long size = channel.size();
+    List<Long> bounds = new ArrayList<>();
+    bounds.add(0L);
+    long position = chunkSize;
+    while (position < size) {
+      long lineStart = nextLineStart(channel, position - 1, size);
+      if (lineStart >= size) {
+        break;
+      }
+      bounds.add(lineStart);
+      position = Math.max(lineStart + 1, position + chunkSize);
+    }
+    bounds.add(size);
+    long[] result = new long[bounds.size()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = bounds.get(i);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the position just after the first line ending at or after <code>position</code> (a CR
+   * LF pair counts as one line ending), or <code>size</code> if there is none.
+   */
+  private static long nextLineStart(FileChannel channel, long position, long size)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    boolean afterCarriageReturn = false;
+    while (position < size) {
+      buffer.clear();
+      int n = channel.read(buffer, position);
+      if (n < 0) {
+        break;
+      }
+      for (int i = 0; i < n; ++i, ++position) {
+        byte b = buffer.get(i);
+        if (afterCarriageReturn) {
+          return b == '\n' ? position + 1 : position;
+        } else if (b == '\n') {
+          return position + 1;
+        } else if (b == '\r') {
+          afterCarriageReturn = true;
+        }
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns a bound on the magnitude of a value written in at most <code>length</code> bytes, as
+   * each digit takes up at least one byte.
+   */
+  static int boundForLength(int length) {
+    long bound = 1;
+    for (int i = 0; i < length && bound <= Integer.MAX_VALUE; ++i) {
+      bound *= 10;
+    }
+    return (int) Math.min(Integer.MAX_VALUE, bound - 1);
+  }
+
+  /** The number of lines in a chunk, and the number of bytes in its longest value. */
+  private static final class ChunkCounts {
+    final int numLines;
+    final int maxValueLength;
+
+    ChunkCounts(int numLines, int maxValueLength) {
+      this.numLines = numLines;
+      this.maxValueLength = maxValueLength;
+    }
+  }
+
+  /**
+   * Count the lines in the chunk from <code>start</code> to <code>end</code>, counting line endings
+   * in the same way as <code>TriangleReader</code>, including a last line with no line ending at
+   * the end of the file. The longest run of bytes between spaces and line endings is also found.
+   */
+  private static ChunkCounts countLines(FileChannel channel, long start, long end)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    int numLines = 0;
+    int valueLength = 0;
+    int maxValueLength = 0;
+    boolean afterCarriageReturn = false;
+    byte last = '\n';
+    for (long position = start; position < end; ) {
+      buffer.clear();
+      buffer.limit((int) Math.min(BUFFER_SIZE, end - position));
+      int n = channel.read(buffer, position);
+      if (n < 0) {
+        throw new IOException("File was truncated while it was being read");
+      }
+      for (int i = 0; i < n; ++i) {
+        byte b = buffer.get(i);
+        if (b == '\n') {
+          if (!afterCarriageReturn) {
+            ++numLines;
+          }
+        } else if (b == '\r') {
+          ++numLines;
+        }
+        if (b == ' ' || b == '\n' || b == '\r') {
+          valueLength = 0;
+        } else if (++valueLength > maxValueLength) {
+          maxValueLength = valueLength;
+        }
+        afterCarriageReturn = (b == '\r');
+        last = b;
+      }
+      position += n;
+    }
+    if (end == channel.size() && last != '\n' && last != '\r') {
+      ++numLines;
+    }
+    return new ChunkCounts(numLines, maxValueLength);
+  }
+
+  /** An input stream over part of a file, using positional reads so it can share the channel. */
+  private static final class ChunkInputStream extends InputStream {
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+
+    ChunkInputStream(FileChannel channel, long start, long end) {
+      this.channel = channel;
+      this.position = start;
+      this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : (b[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (position >= end) {
+        return -1;
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, end - position));
+      int n = channel.read(buffer, position);
+      if (n < 0) {
+        throw new IOException("File was truncated while it was being read");
+      }
+      position += n;
+      return n;
+    }
+  }
+}
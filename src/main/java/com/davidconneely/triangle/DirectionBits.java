@@ -0,0 +1,69 @@
+package com.davidconneely.triangle;
+
+import java.util.Arrays;
+
+/**
+ * A packed bitset with one bit per value in a triangle, indexed in the same way as the values
+ * themselves (see {@linkplain Triangle#rowOffset}). Path finders use it to record which way a
+ * minimal path goes at each value, which takes 1/32 of the memory of keeping running totals.
+ */
+final class DirectionBits {
+  private long[] words;
+
+  DirectionBits(long numBits) {
+    words = new long[wordsFor(numBits)];
+  }
+
+  /**
+   * Make sure there is room for at least <code>numBits</code> bits, keeping the bits already set.
+   */
+  void ensureCapacity(long numBits) {
+    int numWords = wordsFor(numBits);
+    if (numWords > words.length) {
+      long grown = Math.max(numWords, Math.min(2L * words.length, Integer.MAX_VALUE - 8));
+      words = Arrays.copyOf(words, (int) grown);
+    }
+  }
+
+  void set(long index) {
+    words[(int) (index >>> 6)] |= 1L << index;
+  }
+
+  /**
+   * Set the bits from <code>index</code> onwards that are set in the low <code>count</code> bits of
+   * <code>bits</code> (so the lowest bit of <code>bits</code> is for <code>index</code>). Only the
+   * words that have a bit to set are written.
+   */
+  void setBits(long index, long bits, int count) {
+    if (count < 64) {
+      bits &= (1L << count) - 1;
+    }
+    if (bits == 0) {
+      return;
+    }
+    int wordNo = (int) (index >>> 6);
+    int shift = (int) (index & 63);
+    words[wordNo] |= bits << shift;
+    if (shift != 0 && (bits >>> (64 - shift)) != 0) {
+      words[wordNo + 1] |= bits >>> (64 - shift);
+    }
+  }
+
+  boolean get(long index) {
+    return (words[(int) (index >>> 6)] & (1L << index)) != 0;
+  }
+
+  /** Returns the 64 bits from <code>64*wordNo</code> onwards (the lowest bit is the first). */
+  long word(int wordNo) {
+    return words[wordNo];
+  }
+
+  /** Clear the first <code>numBits</code> bits, so that they can be reused. */
+  void clear(long numBits) {
+    Arrays.fill(words, 0, wordsFor(numBits), 0);
+  }
+
+  private static int wordsFor(long numBits) {
+    return Math.toIntExact((numBits + 63) >>> 6);
+  }
+}
@@ -0,0 +1,148 @@
+package com.davidconneely.triangle;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Direction bits (see {@linkplain DirectionBits}) for a triangle that is too big to keep them in
+ * memory, in a temporary file instead. The bits are indexed in the same way, but are added a row at
+ * a time, from the vertex down, and written to the file in large sequential writes as they fill a
+ * buffer. They are read back a block at a time: a path retraced from the base up reads each block
+ * once, from the end of the file back to the start. The memory used is the two buffers, whatever
+ * the size of the triangle.
+ *
+ * <p>The file is deleted when this is closed.
+ */
+final class DirectionSpillFile implements AutoCloseable {
+  /** The size of the write buffer and of each block read back, 1MiB (8M bits). */
+  static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+  private final int blockSize;
+  private final FileChannel channel;
+  private final ByteBuffer writeBuffer;
+  private final ByteBuffer readBuffer;
+
+  /** The bits that do not yet make up a whole word, and how many there are. */
+  private long pendingWord;
+
+  private int pendingBits;
+
+  /** The number of whole words written to the file (not counting those still in the buffer). */
+  private long wordsWritten;
+
+  /** The word index of the block in the read buffer, or -1 if there is none. */
+  private long readBlockStart = -1;
+
+  DirectionSpillFile() throws IOException {
+    this(Files.createTempFile("triangle", ".bits"), DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Use <code>file</code>, which is replaced, and deleted when this is closed, with blocks of
+   * <code>blockSize</code> bytes (a multiple of 8). Only used directly by tests.
+   */
+  DirectionSpillFile(Path file, int blockSize) throws IOException {
+    this.blockSize = blockSize;
+    channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE);
+    writeBuffer = ByteBuffer.allocateDirect(blockSize).order(ByteOrder.LITTLE_ENDIAN);
+    readBuffer = ByteBuffer.allocateDirect(blockSize).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /** Add the first <code>numBits</code> bits of <code>rowBits</code> after those already added. */
+  void append(DirectionBits rowBits, int numBits) {
+    for (int wordNo = 0; numBits > 0; ++wordNo, numBits -= 64) {
+      long bits = rowBits.word(wordNo);
+      int count = Math.min(numBits, 64);
+      if (count < 64) {
+        bits &= (1L << count) - 1;
+      }
+      pendingWord |= bits << pendingBits;
+      if (pendingBits + count >= 64) {
+        putWord(pendingWord);
+        // the bits that did not fit (none, if there were no bits pending)
+        pendingWord = pendingBits == 0 ? 0 : bits >>> (64 - pendingBits);
+        pendingBits = pendingBits + count - 64;
+      } else {
+        pendingBits += count;
+      }
+    }
+  }
+
+  boolean get(long index) {
+    long wordNo = index >>> 6;
+    if (writeBuffer.position() > 0) {
+      flush();
+    }
+    long word;
+    if (wordNo >= wordsWritten) {
+      word = pendingWord;
+    } else {
+      long wordsPerBlock = blockSize / Long.BYTES;
+      long blockStart = wordNo / wordsPerBlock * wordsPerBlock;
+      if (blockStart != readBlockStart) {
+        readBlock(blockStart);
+      }
+      word = readBuffer.getLong((int) (wordNo - blockStart) * Long.BYTES);
+    }
+    return (word & (1L << index)) != 0;
+  }
+
+  private void putWord(long word) {
+    writeBuffer.putLong(word);
+    if (!writeBuffer.hasRemaining()) {
+      flush();
+    }
+  }
+
+  /** Write the whole words in the buffer to the end of the file. */
+  private void flush() {
+    writeBuffer.flip();
+    long words = writeBuffer.remaining() / Long.BYTES;
+    try {
+      while (writeBuffer.hasRemaining()) {
+        channel.write(writeBuffer, wordsWritten * Long.BYTES + writeBuffer.position());
+      }
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+    writeBuffer.clear();
+    wordsWritten += words;
+    // the block in the read buffer may have been only part of a block until now
+    readBlockStart = -1;
+  }
+
+  private void readBlock(long blockStart) {
+    readBuffer.clear();
+    long position = blockStart * Long.BYTES;
+    long size = Math.min(blockSize, (wordsWritten - blockStart) * Long.BYTES);
+    readBuffer.limit((int) size);
+    try {
+      while (readBuffer.hasRemaining()) {
+        if (channel.read(readBuffer, position + readBuffer.position()) < 0) {
+          throw new IOException("Direction bits file was truncated");
+        }
+      }
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+    readBlockStart = blockStart;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,91 @@
+package com.davidconneely.triangle;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A triangle whose values can no longer be changed, returned by <code>Triangle.freeze</code>. It
+ * has no methods that change it, and everything it reads is in final fields, so it can be handed to
+ * any number of threads and read by all of them at once, without copying it or taking any locks,
+ * however it is published to them.
+ *
+ * <p>It should only be closed once they have all finished with it. A copy that can be changed can
+ * be made with {@linkplain #copy}.
+ */
+public final class FrozenTriangle extends TriangleView {
+  private final TriangleStorage storage;
+  private final int numRows;
+  private final long numCells;
+  private final int minValue;
+  private final int maxValue;
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  /**
+   * Take over storage that holds <code>numRows</code> complete rows of values, all between <code>
+   * minValue</code> and <code>maxValue</code> (inclusive), which nothing else will change.
+   */
+  FrozenTriangle(TriangleStorage storage, int numRows, int minValue, int maxValue) {
+    this.storage = storage;
+    this.numRows = numRows;
+    this.numCells = Triangle.rowOffset(numRows);
+    this.minValue = numRows > 0 ? minValue : Integer.MAX_VALUE;
+    this.maxValue = numRows > 0 ? maxValue : Integer.MIN_VALUE;
+  }
+
+  @Override
+  int size() {
+    return numRows;
+  }
+
+  @Override
+  long cellCount() {
+    return numCells;
+  }
+
+  @Override
+  int get(int row, int col) {
+    return storage.get(cellIndex(row, col));
+  }
+
+  @Override
+  void copyRow(int row, int[] dest) {
+    checkRow(row);
+    storage.read(Triangle.rowOffset(row), dest, 0, row + 1);
+  }
+
+  @Override
+  int minValue() {
+    return minValue;
+  }
+
+  @Override
+  int maxValue() {
+    return maxValue;
+  }
+
+  @Override
+  int valueWidth() {
+    return storage.valueWidth();
+  }
+
+  /**
+   * Returns an independent copy of the triangle that can be changed, stored in the same way (a copy
+   * of a memory-mapped triangle uses a temporary file that is deleted when the copy is closed).
+   */
+  public Triangle copy() {
+    try {
+      return new Triangle(storage.copy(numCells), numRows, minValue, maxValue);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  /** Closing it again, from any thread, does nothing. */
+  @Override
+  public void close() throws IOException {
+    if (closed.compareAndSet(false, true)) {
+      storage.close(numCells);
+    }
+  }
+}
@@ -0,0 +1,317 @@
+package com.davidconneely.triangle;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * Stores the values in Java arrays. The storage is split into fixed-size chunks so that a triangle
+ * can hold more than 2^31 values (each chunk is a separate Java array). Only the first chunk is
+ * ever smaller than the full chunk size, so small triangles do not pay for a whole chunk up front.
+ *
+ * <p>The arrays are of the narrowest primitive type that holds all the values: <code>byte</code>,
+ * <code>short</code> or <code>int</code> (see {@linkplain #create}). Most triangles hold small
+ * values, so this takes a half or a quarter of the memory of <code>int</code> arrays, and more of
+ * the triangle fits in the processor's caches. If a value is added that does not fit, the values
+ * are copied into wider arrays (see {@linkplain #widen}); as there are only three widths, this
+ * happens at most twice. The values are widened back to <code>int</code> as they are read.
+ *
+ * @param <A> The type of each chunk, an array of the primitive type.
+ */
+abstract class HeapTriangleStorage<A> implements TriangleStorage {
+  /** Each chunk holds 2^30 values (up to 4GiB), comfortably below the maximum Java array length. */
+  static final int DEFAULT_CHUNK_BITS = 30;
+
+  /** The first chunk starts this small and doubles until it reaches the full chunk size. */
+  private static final int INITIAL_CAPACITY = 16;
+
+  private static final int COPY_BUFFER_SIZE = 1 << 16;
+
+  private final int chunkBits;
+  private final int chunkMask;
+  private Object[] chunks;
+
+  private HeapTriangleStorage(int chunkBits, A firstChunk) {
+    this.chunkBits = chunkBits;
+    this.chunkMask = (1 << chunkBits) - 1;
+    this.chunks = new Object[] {firstChunk};
+  }
+
+  /**
+   * Returns new, empty storage in chunks of 2^<code>chunkBits</code> values, using the narrowest
+   * arrays that can hold values from <code>minValue</code> to <code>maxValue</code>.
+   */
+  static HeapTriangleStorage<?> create(int chunkBits, int minValue, int maxValue) {
+    int initialCapacity = Math.min(INITIAL_CAPACITY, 1 << chunkBits);
+    if (minValue >= Byte.MIN_VALUE && maxValue <= Byte.MAX_VALUE) {
+      return new ByteCells(chunkBits, initialCapacity);
+    } else if (minValue >= Short.MIN_VALUE && maxValue <= Short.MAX_VALUE) {
+      return new ShortCells(chunkBits, initialCapacity);
+    }
+    return new IntCells(chunkBits, initialCapacity);
+  }
+
+  /** Returns a new chunk of <code>size</code> zeros. */
+  abstract A newChunk(int size);
+
+  /** Returns the lowest value the chunks can hold. */
+  abstract int minCellValue();
+
+  /** Returns the highest value the chunks can hold. */
+  abstract int maxCellValue();
+
+  abstract int get(A chunk, int offset);
+
+  abstract void set(A chunk, int offset, int value);
+
+  /** Copy <code>length</code> values from <code>offset</code> in a chunk into an array. */
+  abstract void read(A chunk, int offset, int[] dest, int destPos, int length);
+
+  /** Copy <code>length</code> values from an array into a chunk at <code>offset</code>. */
+  abstract void write(int[] src, int srcPos, A chunk, int offset, int length);
+
+  @SuppressWarnings("unchecked")
+  private A chunk(long index) {
+    return (A) chunks[(int) (index >>> chunkBits)];
+  }
+
+  @Override
+  public void ensureCapacity(long minCells) {
+    int chunkSize = 1 << chunkBits;
+    int firstLength = Array.getLength(chunks[0]);
+    if (firstLength < chunkSize) {
+      if (minCells <= firstLength) {
+        return;
+      }
+      int grown = (int) Math.min(chunkSize, Math.max(minCells, 2L * firstLength));
+      A first = newChunk(grown);
+      System.arraycopy(chunks[0], 0, first, 0, firstLength);
+      chunks[0] = first;
+    }
+    long numChunks = (minCells + chunkSize - 1) >>> chunkBits;
+    if (numChunks > chunks.length) {
+      int oldLength = chunks.length;
+      chunks = Arrays.copyOf(chunks, Math.toIntExact(numChunks));
+      for (int i = oldLength; i < chunks.length; ++i) {
+        chunks[i] = newChunk(chunkSize);
+      }
+    }
+  }
+
+  @Override
+  public int get(long index) {
+    return get(chunk(index), (int) index & chunkMask);
+  }
+
+  @Override
+  public void set(long index, int value) {
+    set(chunk(index), (int) index & chunkMask, value);
+  }
+
+  @Override
+  public void read(long index, int[] dest, int destPos, int length) {
+    while (length > 0) {
+      int offset = (int) index & chunkMask;
+      int n = Math.min(length, (1 << chunkBits) - offset);
+      read(chunk(index), offset, dest, destPos, n);
+      index += n;
+      destPos += n;
+      length -= n;
+    }
+  }
+
+  @Override
+  public void write(long index, int[] src, int srcPos, int length) {
+    while (length > 0) {
+      int offset = (int) index & chunkMask;
+      int n = Math.min(length, (1 << chunkBits) - offset);
+      write(src, srcPos, chunk(index), offset, n);
+      index += n;
+      srcPos += n;
+      length -= n;
+    }
+  }
+
+  @Override
+  public HeapTriangleStorage<?> copy(long numCells) {
+    HeapTriangleStorage<?> s = create(chunkBits, minCellValue(), maxCellValue());
+    s.ensureCapacity(numCells);
+    for (int i = 0; i < s.chunks.length; ++i) {
+      int length = Math.min(Array.getLength(chunks[i]), Array.getLength(s.chunks[i]));
+      System.arraycopy(chunks[i], 0, s.chunks[i], 0, length);
+    }
+    return s;
+  }
+
+  /**
+   * If the chunks cannot hold values from <code>minValue</code> to <code>maxValue</code>, returns
+   * new storage with wider chunks that can, with the first <code>numCells</code> values copied into
+   * it. Otherwise returns this storage.
+   */
+  @Override
+  public TriangleStorage widen(int minValue, int maxValue, long numCells) {
+    if (minValue >= minCellValue() && maxValue <= maxCellValue()) {
+      return this;
+    }
+    HeapTriangleStorage<?> s =
+        create(chunkBits, Math.min(minValue, minCellValue()), Math.max(maxValue, maxCellValue()));
+    s.ensureCapacity(numCells);
+    int[] buffer = new int[(int) Math.min(numCells, COPY_BUFFER_SIZE)];
+    for (long index = 0; index < numCells; index += buffer.length) {
+      int n = (int) Math.min(buffer.length, numCells - index);
+      read(index, buffer, 0, n);
+      s.write(index, buffer, 0, n);
+    }
+    return s;
+  }
+
+  @Override
+  public void close(long numCells) {
+    // nothing to release, the garbage collector will take care of the arrays
+  }
+
+  private static final class ByteCells extends HeapTriangleStorage<byte[]> {
+    ByteCells(int chunkBits, int initialCapacity) {
+      super(chunkBits, new byte[initialCapacity]);
+    }
+
+    @Override
+    byte[] newChunk(int size) {
+      return new byte[size];
+    }
+
+    @Override
+    int minCellValue() {
+      return Byte.MIN_VALUE;
+    }
+
+    @Override
+    int maxCellValue() {
+      return Byte.MAX_VALUE;
+    }
+
+    @Override
+    public int valueWidth() {
+      return Byte.BYTES;
+    }
+
+    @Override
+    int get(byte[] chunk, int offset) {
+      return chunk[offset];
+    }
+
+    @Override
+    void set(byte[] chunk, int offset, int value) {
+      chunk[offset] = (byte) value;
+    }
+
+    @Override
+    void read(byte[] chunk, int offset, int[] dest, int destPos, int length) {
+      for (int i = 0; i < length; ++i) {
+        dest[destPos + i] = chunk[offset + i];
+      }
+    }
+
+    @Override
+    void write(int[] src, int srcPos, byte[] chunk, int offset, int length) {
+      for (int i = 0; i < length; ++i) {
+        chunk[offset + i] = (byte) src[srcPos + i];
+      }
+    }
+  }
+
+  private static final class ShortCells extends HeapTriangleStorage<short[]> {
+    ShortCells(int chunkBits, int initialCapacity) {
+      super(chunkBits, new short[initialCapacity]);
+    }
+
+    @Override
+    short[] newChunk(int size) {
+      return new short[size];
+    }
+
+    @Override
+    int minCellValue() {
+      return Short.MIN_VALUE;
+    }
+
+    @Override
+    int maxCellValue() {
+      return Short.MAX_VALUE;
+    }
+
+    @Override
+    public int valueWidth() {
+      return Short.BYTES;
+    }
+
+    @Override
+    int get(short[] chunk, int offset) {
+      return chunk[offset];
+    }
+
+    @Override
+    void set(short[] chunk, int offset, int value) {
+      chunk[offset] = (short) value;
+    }
+
+    @Override
+    void read(short[] chunk, int offset, int[] dest, int destPos, int length) {
+      for (int i = 0; i < length; ++i) {
+        dest[destPos + i] = chunk[offset + i];
+      }
+    }
+
+    @Override
+    void write(int[] src, int srcPos, short[] chunk, int offset, int length) {
+      for (int i = 0; i < length; ++i) {
+        chunk[offset + i] = (short) src[srcPos + i];
+      }
+    }
+  }
+
+  private static final class IntCells extends HeapTriangleStorage<int[]> {
+    IntCells(int chunkBits, int initialCapacity) {
+      super(chunkBits, new int[initialCapacity]);
+    }
+
+    @Override
+    int[] newChunk(int size) {
+      return new int[size];
+    }
+
+    @Override
+    int minCellValue() {
+      return Integer.MIN_VALUE;
+    }
+
+    @Override
+    int maxCellValue() {
+      return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int valueWidth() {
+      return Integer.BYTES;
+    }
+
+    @Override
+    int get(int[] chunk, int offset) {
+      return chunk[offset];
+    }
+
+    @Override
+    void set(int[] chunk, int offset, int value) {
+      chunk[offset] = value;
+    }
+
+    @Override
+    void read(int[] chunk, int offset, int[] dest, int destPos, int length) {
+      System.arraycopy(chunk, offset, dest, destPos, length);
+    }
+
+    @Override
+    void write(int[] src, int srcPos, int[] chunk, int offset, int length) {
+      System.arraycopy(src, srcPos, chunk, offset, length);
+    }
+  }
+}
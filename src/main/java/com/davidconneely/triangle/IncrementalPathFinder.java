@@ -0,0 +1,109 @@
+package com.davidconneely.triangle;
+
+/**
+ * Finds a minimal path through a triangle whose values are changed a few at a time, without solving
+ * the whole triangle again after each change.
+ *
+ * <p>Unlike <code>TrianglePathFinder</code>, which keeps only one row of running totals, this keeps
+ * the whole table of them: the length of a minimal path from each value down to the base. A change
+ * to one value can only change the totals of the values above it, which are within a cone that
+ * widens by one column each row up. {@linkplain #update} recomputes the totals in that cone a row
+ * at a time, and narrows it to the columns whose totals actually changed, stopping as soon as a row
+ * has none. For most changes that is only a few rows, so the time taken depends on how far the
+ * change spreads rather than the size of the triangle.
+ *
+ * <p>The table takes 8 bytes per value, on top of the triangle itself, and each row must fit in a
+ * Java array.
+ */
+final class IncrementalPathFinder {
+  private final Triangle t;
+
+  /** The length of a minimal path down to the base from each value, a row at a time. */
+  private final long[][] totals;
+
+  /** The number of totals recomputed by the last update, see {@linkplain #lastUpdateCells}. */
+  private long lastUpdateCells;
+
+  /**
+   * Solve <code>t</code>, which is then updated through this finder (changes made to it directly
+   * are not noticed).
+   */
+  IncrementalPathFinder(Triangle t) {
+    this.t = t;
+    this.totals = new long[t.size()][];
+    int[] values = new int[t.size()];
+    for (int rowNo = t.size() - 1; rowNo >= 0; --rowNo) {
+      t.copyRow(rowNo, values);
+      long[] row = new long[rowNo + 1];
+      for (int colNo = 0; colNo <= rowNo; ++colNo) {
+        row[colNo] = values[colNo] + lowestBelow(rowNo, colNo);
+      }
+      totals[rowNo] = row;
+    }
+  }
+
+  /**
+   * Replaces the value at column <code>col</code> of row <code>row</code> (both 0-based) and
+   * recomputes the running totals that depend on it.
+   */
+  void update(int row, int col, int value) {
+    t.set(row, col, value);
+    int from = col;
+    int to = col;
+    lastUpdateCells = 0;
+    for (int rowNo = row; rowNo >= 0 && from <= to; --rowNo) {
+      // the values whose totals changed in this row decide which ones to recompute in the next
+      int changedFrom = Integer.MAX_VALUE;
+      int changedTo = Integer.MIN_VALUE;
+      long[] rowTotals = totals[rowNo];
+      for (int colNo = from; colNo <= to; ++colNo) {
+        long total = t.get(rowNo, colNo) + lowestBelow(rowNo, colNo);
+        if (total != rowTotals[colNo]) {
+          rowTotals[colNo] = total;
+          changedFrom = Math.min(changedFrom, colNo);
+          changedTo = colNo;
+        }
+      }
+      lastUpdateCells += to - from + 1;
+      // a value is above the values in the same column and the one to the left
+      from = Math.max(changedFrom - 1, 0);
+      to = Math.min(changedTo, rowNo - 1);
+    }
+  }
+
+  /** Returns the length of a minimal path, or 0 if the triangle is empty. */
+  long minCost() {
+    return totals.length == 0 ? 0 : totals[0][0];
+  }
+
+  /**
+   * Returns the values along a minimal path from vertex to base, the same path as <code>
+   * TrianglePathFinder.findMinPath</code> returns (keeping left wherever the choice is between
+   * minimal paths).
+   */
+  int[] findMinPath() {
+    int[] path = new int[totals.length];
+    int colNo = 0;
+    for (int rowNo = 0; rowNo < totals.length; ++rowNo) {
+      if (rowNo > 0 && totals[rowNo][colNo + 1] < totals[rowNo][colNo]) {
+        ++colNo;
+      }
+      path[rowNo] = t.get(rowNo, colNo);
+    }
+    return path;
+  }
+
+  /** Returns the number of running totals recomputed by the last {@linkplain #update}. */
+  long lastUpdateCells() {
+    return lastUpdateCells;
+  }
+
+  /** Returns the lower of the totals below a value, or 0 on the base. */
+  private long lowestBelow(int rowNo, int colNo) {
+    if (rowNo + 1 == totals.length) {
+      return 0;
+    }
+    long[] below = totals[rowNo + 1];
+    return Math.min(below[colNo], below[colNo + 1]);
+  }
+}
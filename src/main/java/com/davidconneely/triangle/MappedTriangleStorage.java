@@ -0,0 +1,230 @@
+package com.davidconneely.triangle;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+
+/**
+ * Stores the values in a memory-mapped file, so that the operating system pages them in and out
+ * rather than them having to fit in the Java heap. Values are little-endian 32-bit integers.
+ *
+ * <p>The file is mapped in fixed-size regions, and more regions are mapped as the triangle grows
+ * (extending the file as necessary). When the storage is closed, all the regions are unmapped and a
+ * writable file is truncated to the values actually in use.
+ */
+final class MappedTriangleStorage implements TriangleStorage {
+  /** Each region maps 2^24 values (64MiB) of the file. */
+  static final int DEFAULT_REGION_BITS = 24;
+
+  static final ValueLayout.OfInt LAYOUT = ValueLayout.JAVA_INT.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+  /** Reads a value from a <code>byte[]</code> holding bytes copied from the file. */
+  private static final VarHandle BUFFER_VALUE =
+      MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private final Path file;
+  private final FileChannel channel;
+  private final boolean writable;
+  private final long baseOffset;
+  private final int regionBits;
+  private final long regionMask;
+  private final Arena arena = Arena.ofShared();
+  private MemorySegment[] regions = new MemorySegment[0];
+  private boolean deleteOnClose;
+
+  private MappedTriangleStorage(
+      Path file, FileChannel channel, boolean writable, long baseOffset, int regionBits) {
+    this.file = file;
+    this.channel = channel;
+    this.writable = writable;
+    this.baseOffset = baseOffset;
+    this.regionBits = regionBits;
+    this.regionMask = (1L << regionBits) - 1;
+  }
+
+  /**
+   * Create (or truncate) <code>file</code> to hold new values, starting <code>baseOffset</code>
+   * bytes into the file.
+   */
+  static MappedTriangleStorage create(Path file, long baseOffset, int regionBits)
+      throws IOException {
+    FileChannel channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    return new MappedTriangleStorage(file, channel, true, baseOffset, regionBits);
+  }
+
+  /**
+   * Create a new temporary file in <code>dir</code> (or the default temporary-file directory if
+   * <code>null</code>), which is deleted when it is closed.
+   */
+  static MappedTriangleStorage createTemp(Path dir, int regionBits) throws IOException {
+    Path file =
+        dir == null
+            ? Files.createTempFile("triangle", ".tmp")
+            : Files.createTempFile(dir, "triangle", ".tmp");
+    MappedTriangleStorage s = create(file, 0L, regionBits);
+    s.deleteOnClose = true;
+    return s;
+  }
+
+  /**
+   * Open existing values in <code>file</code>, starting <code>baseOffset</code> bytes into the file
+   * and mapping only the first <code>numCells</code> values.
+   */
+  static MappedTriangleStorage open(Path file, long baseOffset, long numCells, boolean writable)
+      throws IOException {
+    FileChannel channel =
+        writable
+            ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            : FileChannel.open(file, StandardOpenOption.READ);
+    MappedTriangleStorage s =
+        new MappedTriangleStorage(file, channel, writable, baseOffset, DEFAULT_REGION_BITS);
+    try {
+      if (channel.size() < baseOffset + numCells * Integer.BYTES) {
+        throw new IOException("File is too short to hold " + numCells + " values: " + file);
+      }
+      s.ensureCapacity(numCells);
+    } catch (IOException | RuntimeException e) {
+      s.close(numCells);
+      throw e;
+    }
+    return s;
+  }
+
+  @Override
+  public void ensureCapacity(long minCells) throws IOException {
+    long numRegions = (minCells + regionMask) >>> regionBits;
+    if (numRegions <= regions.length) {
+      return;
+    }
+    int oldLength = regions.length;
+    regions = Arrays.copyOf(regions, Math.toIntExact(numRegions));
+    long regionBytes = (1L << regionBits) * Integer.BYTES;
+    for (int i = oldLength; i < regions.length; ++i) {
+      long position = baseOffset + i * regionBytes;
+      if (writable) {
+        // mapping past the end of the file extends it
+        regions[i] = channel.map(MapMode.READ_WRITE, position, regionBytes, arena);
+      } else {
+        long size = Math.min(regionBytes, channel.size() - position);
+        regions[i] = channel.map(MapMode.READ_ONLY, position, size, arena);
+      }
+    }
+  }
+
+  @Override
+  public int get(long index) {
+    return regions[(int) (index >>> regionBits)].getAtIndex(LAYOUT, index & regionMask);
+  }
+
+  @Override
+  public void set(long index, int value) {
+    regions[(int) (index >>> regionBits)].setAtIndex(LAYOUT, index & regionMask, value);
+  }
+
+  @Override
+  public void read(long index, int[] dest, int destPos, int length) {
+    while (length > 0) {
+      long offset = index & regionMask;
+      int n = (int) Math.min(length, (1L << regionBits) - offset);
+      MemorySegment region = regions[(int) (index >>> regionBits)];
+      MemorySegment.copy(region, LAYOUT, offset * Integer.BYTES, dest, destPos, n);
+      index += n;
+      destPos += n;
+      length -= n;
+    }
+  }
+
+  @Override
+  public void write(long index, int[] src, int srcPos, int length) {
+    while (length > 0) {
+      long offset = index & regionMask;
+      int n = (int) Math.min(length, (1L << regionBits) - offset);
+      MemorySegment region = regions[(int) (index >>> regionBits)];
+      MemorySegment.copy(src, srcPos, region, LAYOUT, offset * Integer.BYTES, n);
+      index += n;
+      srcPos += n;
+      length -= n;
+    }
+  }
+
+  /**
+   * Add the bytes of the first <code>numCells</code> values to a checksum, and return the lowest
+   * and highest of the values (in an array of two), as they are scanned anyway. The bytes are
+   * copied through a small buffer, as a buffer that views a shared mapping cannot be given to a
+   * checksum.
+   */
+  int[] updateChecksum(Checksum checksum, long numCells) {
+    byte[] buffer = new byte[1 << 16];
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+    long remaining = numCells * Integer.BYTES;
+    for (int i = 0; remaining > 0; ++i) {
+      MemorySegment region = regions[i];
+      long regionEnd = Math.min(remaining, region.byteSize());
+      for (long offset = 0; offset < regionEnd; offset += buffer.length) {
+        int n = (int) Math.min(buffer.length, regionEnd - offset);
+        MemorySegment.copy(region, ValueLayout.JAVA_BYTE, offset, buffer, 0, n);
+        checksum.update(buffer, 0, n);
+        for (int j = 0; j < n; j += Integer.BYTES) {
+          int value = (int) BUFFER_VALUE.get(buffer, j);
+          min = Math.min(min, value);
+          max = Math.max(max, value);
+        }
+      }
+      remaining -= regionEnd;
+    }
+    return new int[] {min, max};
+  }
+
+  @Override
+  public int valueWidth() {
+    return Integer.BYTES;
+  }
+
+  /** Copies are kept in a temporary file next to this one, which is deleted when it is closed. */
+  @Override
+  public MappedTriangleStorage copy(long numCells) throws IOException {
+    MappedTriangleStorage s = createTemp(file.toAbsolutePath().getParent(), regionBits);
+    s.ensureCapacity(numCells);
+    int[] buffer = new int[(int) Math.min(numCells, 1 << 16)];
+    for (long index = 0; index < numCells; index += buffer.length) {
+      int n = (int) Math.min(buffer.length, numCells - index);
+      read(index, buffer, 0, n);
+      s.write(index, buffer, 0, n);
+    }
+    return s;
+  }
+
+  @Override
+  public void close(long numCells) throws IOException {
+    try (channel) {
+      // unmap everything before truncating, as some platforms refuse to truncate a mapped file
+      arena.close();
+      regions = new MemorySegment[0];
+      if (writable && !deleteOnClose) {
+        channel.truncate(baseOffset + numCells * Integer.BYTES);
+      }
+    } finally {
+      if (deleteOnClose) {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+}
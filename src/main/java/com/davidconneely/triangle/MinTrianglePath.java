@@ -1,48 +1,609 @@
 package com.davidconneely.triangle;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public final class MinTrianglePath {
+  /** Standard input, counting the bytes read for the <code>--stats</code> line. */
+  private static final CountingInputStream STDIN = new CountingInputStream(System.in);
+
+  private static final int DEFAULT_CACHE_SIZE = 1024;
+
+  /** The options that take no value when finding a path in one triangle. */
+  private static final List<String> OPTIONS =
+      List.of(
+          "--off-heap",
+          "--streaming",
+          "--spill",
+          "--cost-only",
+          "--parallel",
+          "--pipelined",
+          "--checkpointed",
+          "--stats");
+
+  private static final String USAGE =
+      """
+      Usage: MinTrianglePath [--off-heap] [--streaming [--spill] | --pipelined] [--cost-only]
+                             [--parallel] [--checkpointed | --memory-budget bytes] [--stats]
+                             [triangle-file]
+             MinTrianglePath convert text-triangle-file binary-triangle-file
+             MinTrianglePath check binary-triangle-file
+             MinTrianglePath batch [--jobs n] [--manifest list-file] [--cache-size n]
+                                   [--cache-dir directory] [triangle-file-or-directory...]
+             MinTrianglePath daemon socket-file
+             MinTrianglePath client socket-file [triangle-file]\
+      """;
+
   /**
-   * Read a text-format triangle from standard input and output a minimal path to standard output in
-   * a specific way.
+   * Read a triangle and output a minimal path to standard output in a specific way. The triangle is
+   * read from the file named on the command line (which may be a text-format or binary-format
+   * triangle), or a text-format triangle is read from standard input if there is no file named.
+   *
+   * <p>Options:
+   *
+   * <ul>
+   *   <li><code>--off-heap</code> holds a text-format triangle in a memory-mapped temporary file
+   *       instead of on the Java heap, for triangles that are too big for the heap (binary-format
+   *       triangles are always memory-mapped)
+   *   <li><code>--streaming</code> finds the path in a text-format triangle without holding the
+   *       triangle in memory, by reading it twice (standard input is first copied to a temporary
+   *       file), see <code>StreamingPathFinder</code>
+   *   <li><code>--spill</code> (with <code>--streaming</code>) also writes the decisions made at
+   *       each value to a temporary file, rather than keeping them in memory, for triangles so big
+   *       that even one bit per value does not fit in memory
+   *   <li><code>--pipelined</code> parses a text-format triangle on one thread while finding the
+   *       path on another, see <code>PipelinedPathFinder</code>
+   *   <li><code>--cost-only</code> outputs only the length of a minimal path, not the path itself,
+   *       which for a text-format triangle only needs a single pass over the input and one row of
+   *       working memory
+   *   <li><code>--parallel</code> reads a text-format triangle file using all the available
+   *       processors, see <code>ChunkedTriangleReader</code> (standard input is always read by one
+   *       thread), and splits the wide rows of any triangle between them when finding the path
+   *   <li><code>--checkpointed</code> finds the path in far less working memory than one bit per
+   *       value, for about twice the time, see <code>CheckpointedPathFinder</code>; <code>
+   *       --memory-budget</code> does so only if the working memory would otherwise be more than
+   *       that many bytes (which may end in <code>k</code>, <code>m</code> or <code>g</code>), and
+   *       checkpoints would take less. Neither can be used with <code>--streaming</code>, <code>
+   *       --pipelined</code> or <code>--cost-only</code>, which already need little working memory,
+   *       and <code>--checkpointed</code> cannot be used with <code>--parallel</code>
+   *   <li><code>--stats</code> also outputs a line of statistics (the time taken by each phase, the
+   *       rows and values per second, and the peak heap memory used) to standard error, see <code>
+   *       RunStats</code>
+   * </ul>
+   *
+   * <p>An option that would have no effect, given the others and the format of the triangle, is
+   * refused with the usage message (see {@linkplain #ignoredOption}): <code>--off-heap</code>,
+   * <code>--streaming</code>, <code>--spill</code> and <code>--pipelined</code> with a
+   * binary-format triangle; <code>--streaming</code> with <code>--pipelined</code> or <code>
+   * --cost-only</code>; <code>--off-heap</code> with <code>--streaming</code> or <code>--cost-only
+   * </code>; and <code>--parallel</code> with <code>--streaming</code>, <code>--pipelined</code>,
+   * <code>--cost-only</code> or <code>--checkpointed</code>, as well as the combinations above.
+   *
+   * <p>The backward induction uses the Vector API if the JVM is started with <code>--add-modules
+   * jdk.incubator.vector</code>, unless the system property <code>triangle.kernel</code> is set to
+   * <code>scalar</code>, see <code>RowKernel</code>.
+   *
+   * <p>The <code>convert</code> mode instead converts a text-format triangle (or standard input, if
+   * the file is named <code>-</code>) to a binary-format triangle, see <code>TriangleFile</code>.
+   * The <code>check</code> mode verifies a binary-format triangle against the checksum and range of
+   * values in its header, which the other modes do not do, as it means reading the whole file.
+   *
+   * <p>The <code>batch</code> mode finds a minimal path in each of many triangle files at once,
+   * named on the command line, found in the directories named on the command line, or listed (one
+   * per line) in a manifest file, see <code>BatchSolver</code>. The <code>--jobs</code> option sets
+   * how many paths are found at a time (by default, one per processor). The <code>--cache-size
+   * </code> and <code>--cache-dir</code> options remember the paths found for up to that many
+   * triangles in memory (by default, {@value #DEFAULT_CACHE_SIZE}) and for all of them in that
+   * directory, so that a triangle that is repeated is not solved again, see <code>ResultCache
+   * </code>; the counts of cache hits, misses and errors are output to standard error at the end.
+   *
+   * <p>The <code>daemon</code> mode listens on a Unix domain socket and finds minimal paths for
+   * clients that connect to it, so that each triangle does not pay for starting a new JVM, see
+   * <code>SolverDaemon</code>. The <code>client</code> mode asks the daemon for a minimal path in a
+   * triangle file, or in the text-format triangle on standard input, and outputs it in the same
+   * way.
    */
   public static void main(String[] args) {
-    TriangleReader tr = new TriangleReader(System.in);
-    int[] path;
+    if (args.length > 0 && args[0].equals("convert")) {
+      if (args.length != 3) {
+        usage(null);
+      }
+      exit(convert(args[1], Path.of(args[2])));
+      return;
+    }
+    if (args.length > 0 && args[0].equals("check")) {
+      if (args.length != 2) {
+        usage(null);
+      }
+      exit(check(Path.of(args[1])));
+      return;
+    }
+    if (args.length > 0 && args[0].equals("batch")) {
+      exit(batch(args));
+      return;
+    }
+    if (args.length > 0 && args[0].equals("daemon")) {
+      if (args.length != 2) {
+        usage(null);
+      }
+      exit(daemon(Path.of(args[1])));
+      return;
+    }
+    if (args.length > 0 && args[0].equals("client")) {
+      if (args.length != 2 && args.length != 3) {
+        usage(null);
+      }
+      exit(client(Path.of(args[1]), args.length == 3 ? Path.of(args[2]) : null));
+      return;
+    }
+    Set<String> options = new HashSet<>();
+    long memoryBudget = Long.MAX_VALUE;
+    Path file = null;
+    for (int i = 0; i < args.length; ++i) {
+      String arg = args[i];
+      if (OPTIONS.contains(arg)) {
+        options.add(arg);
+      } else if (arg.equals("--memory-budget") && i + 1 < args.length) {
+        options.add(arg);
+        memoryBudget = byteSize(args[++i]);
+      } else if (arg.startsWith("-") || file != null) {
+        usage(arg);
+      } else {
+        file = Path.of(arg);
+      }
+    }
+    String ignored = ignoredOption(options, isBinary(file));
+    if (ignored != null) {
+      System.err.println("Option has no effect here: " + ignored);
+      usage(null);
+    }
+    boolean offHeap = options.contains("--off-heap");
+    boolean streaming = options.contains("--streaming");
+    boolean spill = options.contains("--spill");
+    boolean costOnly = options.contains("--cost-only");
+    boolean parallel = options.contains("--parallel");
+    boolean pipelined = options.contains("--pipelined");
+    boolean checkpointed = options.contains("--checkpointed");
+    boolean printStats = options.contains("--stats");
+    RunStats stats = printStats ? new RunStats() : RunStats.eventsOnly();
+    int status =
+        costOnly
+            ? solveCost(file, pipelined, stats)
+            : solve(
+                file,
+                offHeap,
+                streaming,
+                spill,
+                parallel,
+                pipelined,
+                checkpointed,
+                memoryBudget,
+                stats);
+    if (printStats && status == 0) {
+      System.err.println(stats.line());
+    }
+    exit(status);
+  }
+
+  /**
+   * Returns an option in <code>options</code> that would have no effect, because of the other
+   * options or because the triangle is (or is not) <code>binary</code>, or null if they all would.
+   */
+  static String ignoredOption(Set<String> options, boolean binary) {
+    boolean streaming = options.contains("--streaming");
+    boolean pipelined = options.contains("--pipelined");
+    boolean costOnly = options.contains("--cost-only");
+    boolean checkpointed = options.contains("--checkpointed");
+    boolean budgeted = options.contains("--memory-budget");
+    boolean lowMemory = streaming || pipelined || costOnly;
+    if (binary) {
+      // a binary-format triangle is always memory-mapped, and never streamed or pipelined
+      for (String option : List.of("--off-heap", "--streaming", "--spill", "--pipelined")) {
+        if (options.contains(option)) {
+          return option;
+        }
+      }
+    }
+    if (options.contains("--spill") && !streaming) {
+      return "--spill";
+    } else if (streaming && (pipelined || costOnly)) {
+      return pipelined ? "--pipelined" : "--cost-only";
+    } else if (options.contains("--off-heap") && (streaming || costOnly)) {
+      return "--off-heap";
+    } else if (options.contains("--parallel") && (lowMemory || checkpointed)) {
+      return "--parallel";
+    } else if (checkpointed && lowMemory) {
+      return "--checkpointed";
+    } else if (budgeted && (lowMemory || checkpointed)) {
+      return "--memory-budget";
+    }
+    return null;
+  }
+
+  /**
+   * Returns whether the file is a binary-format triangle (if it cannot be read, that is found
+   * later).
+   */
+  private static boolean isBinary(Path file) {
+    try {
+      return file != null && TriangleFile.isBinary(file);
+    } catch (IOException ioe) {
+      return false;
+    }
+  }
+
+  /** Find the length of a minimal path, and return the exit status. */
+  private static int solveCost(Path file, boolean pipelined, RunStats stats) {
+    try {
+      long total;
+      RunStats.Phase solve = stats.begin(new PhaseEvent.Solve());
+      if (file != null && TriangleFile.isBinary(file)) {
+        try (Triangle t = TriangleFile.open(file)) {
+          total = TrianglePathFinder.findMinCost(t);
+          solve.end(t.size(), inputSize(file));
+        }
+      } else {
+        try (InputStream is = file == null ? STDIN : Files.newInputStream(file)) {
+          TriangleReader tr = new TriangleReader(is);
+          total =
+              pipelined ? PipelinedPathFinder.findMinCost(tr) : TrianglePathFinder.findMinCost(tr);
+          solve.end(tr.rowsRead(), inputSize(file));
+        }
+      }
+      RunStats.Phase output = stats.begin(new PhaseEvent.Output());
+      System.out.println("Minimal path total is: " + total);
+      output.end(0, 0);
+      return 0;
+    } catch (RuntimeException | IOException e) {
+      return report(e);
+    }
+  }
+
+  /**
+   * Solve the triangle, with checkpoints if <code>checkpointed</code> is set or they keep the
+   * working memory needed under <code>memoryBudget</code> bytes, and return the exit status.
+   */
+  private static int solve(
+      Path file,
+      boolean offHeap,
+      boolean streaming,
+      boolean spill,
+      boolean parallel,
+      boolean pipelined,
+      boolean checkpointed,
+      long memoryBudget,
+      RunStats stats) {
     try {
-      Triangle t = tr.readTriangle();
-      path = TrianglePathFinder.findMinPath(t);
-      int total = 0;
-      StringBuilder sb = new StringBuilder("Minimal path is: ");
-      for (int i = 0; i < path.length; ++i) {
-        if (i > 0) {
-          sb.append(" + ");
+      int[] path;
+      boolean text = file == null || !TriangleFile.isBinary(file);
+      if (streaming && text) {
+        RunStats.Phase solve = stats.begin(new PhaseEvent.Solve());
+        path = findMinPathStreaming(file, spill);
+        solve.end(path.length, inputSize(file));
+      } else if (pipelined && text) {
+        RunStats.Phase solve = stats.begin(new PhaseEvent.Solve());
+        path = findMinPathPipelined(file, offHeap);
+        solve.end(path.length, inputSize(file));
+      } else {
+        RunStats.Phase parse = stats.begin(new PhaseEvent.Parse());
+        try (Triangle t = readTriangle(file, offHeap, parallel)) {
+          parse.end(t.size(), inputSize(file));
+          RunStats.Phase solve = stats.begin(new PhaseEvent.Solve());
+          if (checkpointed || CheckpointedPathFinder.exceedsBudget(t.size(), memoryBudget)) {
+            path = CheckpointedPathFinder.findMinPath(t);
+          } else if (parallel) {
+            path = TrianglePathFinder.findMinPath(t, ForkJoinPool.commonPool());
+          } else {
+            path = TrianglePathFinder.findMinPath(t);
+          }
+          solve.end(t.size(), 0);
         }
-        sb.append(path[i]);
-        total += path[i];
       }
-      sb.append(" = ");
-      sb.append(total);
-      System.out.println(sb.toString());
-    } catch (TriangleShapeException tse) {
+      RunStats.Phase output = stats.begin(new PhaseEvent.Output());
+      System.out.println("Minimal path is: " + formatPath(path));
+      output.end(path.length, 0);
+      return 0;
+    } catch (RuntimeException | IOException e) {
+      return report(e);
+    }
+  }
+
+  /** Returns the values along a path and their total, as <code>7 + 6 + 3 + 2 = 18</code>. */
+  static String formatPath(int[] path) {
+    long total = 0;
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < path.length; ++i) {
+      if (i > 0) {
+        sb.append(" + ");
+      }
+      sb.append(path[i]);
+      total += path[i];
+    }
+    sb.append(" = ");
+    sb.append(total);
+    return sb.toString();
+  }
+
+  /** Find a minimal path in a text-format file, or standard input, without holding it in memory. */
+  private static int[] findMinPathStreaming(Path file, boolean spill) throws IOException {
+    if (file == null) {
+      Path tempFile = Files.createTempFile("triangle", ".txt");
+      try {
+        Files.copy(STDIN, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        return findMinPathStreaming(tempFile, spill);
+      } finally {
+        Files.deleteIfExists(tempFile);
+      }
+    }
+    return spill
+        ? StreamingPathFinder.findMinPathSpilled(file)
+        : StreamingPathFinder.findMinPath(file);
+  }
+
+  /** Find a minimal path in a text-format file, or standard input, while it is being read. */
+  private static int[] findMinPathPipelined(Path file, boolean offHeap) throws IOException {
+    try (Triangle t = offHeap ? Triangle.createMappedTemp() : new Triangle();
+        InputStream is = file == null ? STDIN : Files.newInputStream(file)) {
+      return PipelinedPathFinder.findMinPath(new TriangleReader(is), t);
+    }
+  }
+
+  /** Returns the size of the file, or the number of bytes read so far from standard input. */
+  private static long inputSize(Path file) throws IOException {
+    return file == null ? STDIN.count : Files.size(file);
+  }
+
+  /** Read the triangle from a file in either format, or from standard input. */
+  private static Triangle readTriangle(Path file, boolean offHeap, boolean parallel)
+      throws IOException {
+    if (file != null && TriangleFile.isBinary(file)) {
+      return TriangleFile.open(file);
+    }
+    Triangle t = offHeap ? Triangle.createMappedTemp() : new Triangle();
+    if (file != null && parallel) {
+      try {
+        return ChunkedTriangleReader.readTriangle(file, t);
+      } catch (IOException | RuntimeException e) {
+        t.close();
+        throw e;
+      }
+    }
+    try (InputStream is = file == null ? STDIN : Files.newInputStream(file)) {
+      new TriangleReader(is).readTriangle(t);
+    } catch (IOException | RuntimeException e) {
+      t.close();
+      throw e;
+    }
+    return t;
+  }
+
+  /** Solve many triangles, and return the exit status of the first that could not be solved. */
+  private static int batch(String[] args) {
+    int jobs = Runtime.getRuntime().availableProcessors();
+    Path manifest = null;
+    int cacheSize = 0;
+    Path cacheDir = null;
+    List<Path> paths = new ArrayList<>();
+    for (int i = 1; i < args.length; ++i) {
+      String arg = args[i];
+      if (List.of("--jobs", "--manifest", "--cache-size", "--cache-dir").contains(arg)
+          && i + 1 == args.length) {
+        usage(null);
+      } else if (arg.equals("--jobs")) {
+        jobs = positiveInt(args[++i]);
+      } else if (arg.equals("--manifest")) {
+        manifest = Path.of(args[++i]);
+      } else if (arg.equals("--cache-size")) {
+        cacheSize = positiveInt(args[++i]);
+      } else if (arg.equals("--cache-dir")) {
+        cacheDir = Path.of(args[++i]);
+      } else if (arg.startsWith("-")) {
+        usage(arg);
+      } else {
+        paths.add(Path.of(arg));
+      }
+    }
+    try {
+      List<Path> files = BatchSolver.listFiles(paths, manifest);
+      ResultCache cache = null;
+      if (cacheSize > 0 || cacheDir != null) {
+        cache = new ResultCache(cacheSize > 0 ? cacheSize : DEFAULT_CACHE_SIZE, cacheDir);
+      }
+      int status;
+      try (BatchSolver solver = new BatchSolver(jobs, cache)) {
+        status = solver.solveAll(files, System.out);
+      }
+      if (cache != null) {
+        System.err.println(cache.line());
+      }
+      return status;
+    } catch (RuntimeException | IOException e) {
+      return report(e);
+    }
+  }
+
+  /** Find minimal paths for clients until stopped, and return the exit status. */
+  private static int daemon(Path socketFile) {
+    try (SolverDaemon daemon = SolverDaemon.bind(socketFile)) {
+      daemon.closeOnShutdown();
+      daemon.warmUp();
+      System.err.println("Listening on " + socketFile);
+      daemon.serve();
+      return 0;
+    } catch (RuntimeException | IOException e) {
+      return report(e);
+    }
+  }
+
+  /** Ask the daemon to solve the triangle, and return the exit status it gives. */
+  private static int client(Path socketFile, Path file) {
+    try {
+      String response = SolverDaemon.request(socketFile, file, System.in);
+      int tab = response.indexOf('\t');
+      if (tab <= 0) {
+        throw new IOException("Unexpected response from the daemon: " + response);
+      }
+      int status = Integer.parseInt(response.substring(0, tab));
+      if (status == 0) {
+        System.out.println("Minimal path is: " + response.substring(tab + 1));
+      } else {
+        System.err.println("The daemon could not solve the triangle:");
+        System.err.println(response.substring(tab + 1));
+      }
+      return status;
+    } catch (RuntimeException | IOException e) {
+      return report(e);
+    }
+  }
+
+  /** Returns the value of an option that must be a positive number (exits if it is not). */
+  private static int positiveInt(String arg) {
+    int value = 0;
+    try {
+      value = Integer.parseInt(arg);
+    } catch (NumberFormatException nfe) {
+      usage(arg);
+    }
+    if (value < 1) {
+      usage(arg);
+    }
+    return value;
+  }
+
+  /**
+   * Returns the value of an option that is a number of bytes, optionally followed by <code>k</code>
+   * , <code>m</code> or <code>g</code> for KiB, MiB or GiB (exits if it is not).
+   */
+  private static long byteSize(String arg) {
+    String lower = arg.toLowerCase(Locale.ROOT);
+    int shift =
+        switch (lower.isEmpty() ? ' ' : lower.charAt(lower.length() - 1)) {
+          case 'k' -> 10;
+          case 'm' -> 20;
+          case 'g' -> 30;
+          default -> 0;
+        };
+    String digits = shift == 0 ? lower : lower.substring(0, lower.length() - 1);
+    long value = -1;
+    try {
+      value = Long.parseLong(digits);
+    } catch (NumberFormatException nfe) {
+      usage(arg);
+    }
+    if (value < 0 || value > Long.MAX_VALUE >> shift) {
+      usage(arg);
+    }
+    return value << shift;
+  }
+
+  /** Convert a text-format triangle to a binary-format triangle, and return the exit status. */
+  private static int convert(String input, Path output) {
+    try (InputStream is = input.equals("-") ? System.in : Files.newInputStream(Path.of(input))) {
+      TriangleFile.convert(new TriangleReader(is), output);
+      return 0;
+    } catch (RuntimeException | IOException e) {
+      return report(e);
+    }
+  }
+
+  /** Verify a binary-format triangle, and return the exit status. */
+  private static int check(Path file) {
+    try (Triangle t = TriangleFile.open(file, true)) {
+      System.out.println("Verified " + t.size() + " rows");
+      return 0;
+    } catch (RuntimeException | IOException e) {
+      return report(e);
+    }
+  }
+
+  /**
+   * Explain an exception on standard error, and return the exit status for it, see {@linkplain
+   * #exitStatus}.
+   */
+  private static int report(Exception e) {
+    int status = exitStatus(e);
+    if (e instanceof TriangleShapeException) {
       System.err.println("There is a line that is too short or too long" + " in the input data:");
-      System.err.println(tse.getMessage());
-      System.exit(65);
-    } catch (TriangleValueException tve) {
+    } else if (e instanceof TriangleValueException) {
       System.err.println("There is an invalid value in the input data:");
-      System.err.println(tve.getMessage());
-      System.exit(65);
-    } catch (ArithmeticException ae) {
-      System.err.println(
-          "The sum of numbers along part of some path"
-              + " through\nthe triangle is > 2^31 or is < 1-2^31:");
-      System.err.println(ae.getMessage());
-      System.exit(70);
-    } catch (IOException ioe) {
+    } else if (e instanceof ArithmeticException) {
+      System.err.println("The triangle is too big:");
+    } else if (status == 74) {
       System.err.println("There was an I/O error:");
-      System.err.println(ioe.getMessage());
-      System.exit(74);
+    } else {
+      throw (RuntimeException) e;
+    }
+    System.err.println(message(e));
+    return status;
+  }
+
+  /**
+   * Returns the exit status for an exception (the values follow the BSD <code>sysexits.h</code>
+   * conventions), or 70 if it is not one of the exceptions that are expected.
+   */
+  static int exitStatus(Exception e) {
+    if (e instanceof TriangleShapeException || e instanceof TriangleValueException) {
+      return 65;
+    } else if (e instanceof IOException || e instanceof UncheckedIOException) {
+      return 74;
+    }
+    return 70;
+  }
+
+  /** Returns the message of an exception, or of the <code>IOException</code> it wraps. */
+  static String message(Exception e) {
+    return e instanceof UncheckedIOException ? e.getCause().getMessage() : e.getMessage();
+  }
+
+  /** An input stream that counts the bytes read through it. */
+  private static final class CountingInputStream extends FilterInputStream {
+    long count;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        ++count;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+  }
+
+  private static void usage(String arg) {
+    if (arg != null) {
+      System.err.println("Unknown argument: " + arg);
+    }
+    System.err.println(USAGE);
+    System.exit(64);
+  }
+
+  private static void exit(int status) {
+    if (status != 0) {
+      System.exit(status);
     }
   }
 }
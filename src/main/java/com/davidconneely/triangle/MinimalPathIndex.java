@@ -0,0 +1,270 @@
+package com.davidconneely.triangle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Answers queries for the minimal path from any value in a triangle down to the base, not just from
+ * the vertex, without finding it again each time.
+ *
+ * <p>The index is the whole table of running totals from the backward induction (see <code>
+ * TrianglePathFinder</code>), which keeps only one row of them at a time: the length of a minimal
+ * path from each value to the base. The length of the path from a value is then a single lookup
+ * (see {@linkplain #minCostFrom}), and the path itself is found by stepping down to whichever total
+ * below is lower, keeping left where they are equal, in time proportional to its length (see
+ * {@linkplain #pathFrom}). The values along the path are the differences between the totals on it,
+ * so the triangle itself is not needed once the index is built.
+ *
+ * <p>The table takes 8 bytes per value, and each row must fit in a Java array. An index can be
+ * saved to a file and loaded again (see {@linkplain #save} and {@linkplain #load}), in a format
+ * like that of <code>TriangleFile</code>: a 32-byte header, and all multi-byte numbers
+ * little-endian:
+ *
+ * <ul>
+ *   <li>8 bytes: the ASCII characters <code>TRIPATHS</code>
+ *   <li>4 bytes: format version, currently 1
+ *   <li>4 bytes: total width in bytes, currently always 8
+ *   <li>8 bytes: number of rows
+ *   <li>4 bytes: CRC-32C checksum of the totals
+ *   <li>4 bytes: reserved, always 0
+ * </ul>
+ *
+ * <p>followed by the totals, packed row after row in the same way as a <code>Triangle</code> holds
+ * its values.
+ *
+ * <p>An index is never changed once it is built, so any number of threads can query it at once.
+ */
+final class MinimalPathIndex {
+  static final int HEADER_SIZE = 32;
+  static final int VERSION = 1;
+  private static final byte[] MAGIC = "TRIPATHS".getBytes(StandardCharsets.US_ASCII);
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  /** The length of a minimal path down to the base from each value, a row at a time. */
+  private final long[][] totals;
+
+  private MinimalPathIndex(long[][] totals) {
+    this.totals = totals;
+  }
+
+  /** Returns the index for <code>t</code>, which is read but not kept. */
+  static MinimalPathIndex build(TriangleView t) {
+    int numRows = t.size();
+    long[][] totals = new long[numRows][];
+    if (numRows == 0) {
+      return new MinimalPathIndex(totals);
+    }
+    int[] values = new int[numRows];
+    t.copyRow(numRows - 1, values);
+    long[] below = new long[numRows];
+    for (int i = 0; i < numRows; ++i) {
+      below[i] = values[i];
+    }
+    totals[numRows - 1] = below;
+    for (int rowNo = numRows - 2; rowNo >= 0; --rowNo) {
+      t.copyRow(rowNo, values);
+      long[] row = new long[rowNo + 1];
+      TrianglePathFinder.KERNEL.processRow(below, values, row, null, 0, 0, rowNo + 1);
+      totals[rowNo] = row;
+      below = row;
+    }
+    return new MinimalPathIndex(totals);
+  }
+
+  /** Returns the number of rows in the triangle. */
+  int size() {
+    return totals.length;
+  }
+
+  /**
+   * Returns the length of a minimal path from the value at column <code>col</code> of row <code>
+   * row</code> (both 0-based) down to the base, including that value.
+   */
+  long minCostFrom(int row, int col) {
+    checkCell(row, col);
+    return totals[row][col];
+  }
+
+  /**
+   * Returns the values along a minimal path from the value at column <code>col</code> of row <code>
+   * row</code> (both 0-based) down to the base, starting with that value: the same path as <code>
+   * TrianglePathFinder.findMinPath</code> finds through the triangle below and including it.
+   */
+  int[] pathFrom(int row, int col) {
+    checkCell(row, col);
+    int[] path = new int[totals.length - row];
+    for (int i = 0; i < path.length; ++i, ++row) {
+      long total = totals[row][col];
+      if (row + 1 == totals.length) {
+        path[i] = (int) total;
+      } else {
+        long[] below = totals[row + 1];
+        int next = below[col + 1] < below[col] ? col + 1 : col;
+        path[i] = (int) (total - below[next]);
+        col = next;
+      }
+    }
+    return path;
+  }
+
+  /**
+   * Returns {@linkplain #minCostFrom} for each of the cells at <code>rows[i]</code>, <code>cols[i]
+   * </code>.
+   */
+  long[] minCostsFrom(int[] rows, int[] cols) {
+    checkQueries(rows, cols);
+    long[] costs = new long[rows.length];
+    for (int i = 0; i < rows.length; ++i) {
+      costs[i] = minCostFrom(rows[i], cols[i]);
+    }
+    return costs;
+  }
+
+  /**
+   * Returns {@linkplain #pathFrom} for each of the cells at <code>rows[i]</code>, <code>cols[i]
+   * </code>.
+   */
+  int[][] pathsFrom(int[] rows, int[] cols) {
+    checkQueries(rows, cols);
+    int[][] paths = new int[rows.length][];
+    for (int i = 0; i < rows.length; ++i) {
+      paths[i] = pathFrom(rows[i], cols[i]);
+    }
+    return paths;
+  }
+
+  /**
+   * Write the index to <code>file</code> (which is created, or replaced if it already exists). The
+   * header is written last, so a file that is not finished is not mistaken for a valid one.
+   *
+   * @throws IOException If an I/O error occurs.
+   */
+  void save(Path file) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      channel.position(HEADER_SIZE);
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      CRC32C crc = new CRC32C();
+      for (long[] row : totals) {
+        for (long total : row) {
+          if (!buffer.hasRemaining()) {
+            flush(channel, buffer, crc);
+          }
+          buffer.putLong(total);
+        }
+      }
+      flush(channel, buffer, crc);
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      header.put(MAGIC);
+      header.putInt(VERSION);
+      header.putInt(Long.BYTES);
+      header.putLong(totals.length);
+      header.putInt((int) crc.getValue());
+      header.putInt(0);
+      header.flip();
+      while (header.hasRemaining()) {
+        channel.write(header, header.position());
+      }
+    }
+  }
+
+  /**
+   * Returns the index saved in <code>file</code> by {@linkplain #save}, which is read into memory.
+   *
+   * @throws IOException If an I/O error occurs, or the file is not a valid index file.
+   */
+  static MinimalPathIndex load(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      readFully(channel, header);
+      if (header.hasRemaining()
+          || !Arrays.equals(header.array(), 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+        throw new IOException("Not a minimal path index file: " + file);
+      }
+      header.position(MAGIC.length);
+      int version = header.getInt();
+      int totalWidth = header.getInt();
+      long numRows = header.getLong();
+      int checksum = header.getInt();
+      if (version != VERSION || totalWidth != Long.BYTES) {
+        throw new IOException(
+            "Unsupported minimal path index file (version "
+                + version
+                + ", total width "
+                + totalWidth
+                + "): "
+                + file);
+      }
+      if (numRows < 0
+          || numRows > Integer.MAX_VALUE
+          || channel.size() != HEADER_SIZE + Long.BYTES * Triangle.rowOffset((int) numRows)) {
+        throw new IOException("Corrupt minimal path index file (" + numRows + " rows): " + file);
+      }
+      long[][] totals = new long[(int) numRows][];
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.flip();
+      CRC32C crc = new CRC32C();
+      for (int rowNo = 0; rowNo < totals.length; ++rowNo) {
+        long[] row = new long[rowNo + 1];
+        for (int i = 0; i <= rowNo; ++i) {
+          if (!buffer.hasRemaining()) {
+            buffer.clear();
+            readFully(channel, buffer);
+            buffer.flip();
+            crc.update(buffer.duplicate());
+          }
+          row[i] = buffer.getLong();
+        }
+        totals[rowNo] = row;
+      }
+      if ((int) crc.getValue() != checksum) {
+        throw new IOException("Checksum mismatch in minimal path index file: " + file);
+      }
+      return new MinimalPathIndex(totals);
+    }
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer buffer, CRC32C crc) throws IOException {
+    buffer.flip();
+    crc.update(buffer.duplicate());
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /** Read until the buffer is full or the file ends. */
+  private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+      // keep reading
+    }
+  }
+
+  private void checkCell(int row, int col) {
+    if (row < 0 || row >= totals.length) {
+      throw new IndexOutOfBoundsException(
+          "Row " + row + " out of bounds for " + totals.length + " rows");
+    }
+    if (col < 0 || col > row) {
+      throw new IndexOutOfBoundsException("Column " + col + " out of bounds for row " + row);
+    }
+  }
+
+  private static void checkQueries(int[] rows, int[] cols) {
+    if (rows.length != cols.length) {
+      throw new IllegalArgumentException(
+          "There are " + rows.length + " rows but " + cols.length + " columns");
+    }
+  }
+}
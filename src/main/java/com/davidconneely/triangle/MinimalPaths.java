@@ -0,0 +1,197 @@
+package com.davidconneely.triangle;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * All the minimal paths through a triangle, not only the leftmost one that <code>
+ * TrianglePathFinder</code> returns: how many there are, and each of them in turn.
+ *
+ * <p>The running totals are found by the same backward induction as <code>TrianglePathFinder
+ * </code>, but instead of one bit per value saying which way the leftmost minimal path goes, two
+ * are kept, saying whether a minimal path goes left and whether one goes right (both, where the
+ * totals below are equal). Every path from the vertex that only takes the steps marked is a minimal
+ * path, and every minimal path only takes those steps, so:
+ *
+ * <ul>
+ *   <li>the number of minimal paths from each value is the sum of the numbers from the values it
+ *       steps to, which is found a row at a time from the base up (see {@linkplain #count})
+ *   <li>the paths are the routes through the marked steps, which are iterated over depth-first,
+ *       left before right, without holding more than the current path (see {@linkplain #iterator})
+ * </ul>
+ *
+ * <p>There can be as many as 2^(rows-1) minimal paths, so the count is either a <code>BigInteger
+ * </code> or saturates at <code>Long.MAX_VALUE</code>, and the iterator can run for ever in
+ * practice. The triangle must not be changed while this is in use.
+ */
+final class MinimalPaths implements Iterable<int[]> {
+  private final TriangleView t;
+  private final DirectionBits goesLeft;
+  private final DirectionBits goesRight;
+  private final long minCost;
+
+  /** Find which steps are on minimal paths through <code>t</code>. */
+  MinimalPaths(TriangleView t) {
+    this.t = t;
+    int numRows = t.size();
+    long numBits = numRows == 0 ? 0 : Triangle.rowOffset(numRows - 1);
+    this.goesLeft = new DirectionBits(numBits);
+    this.goesRight = new DirectionBits(numBits);
+    if (numRows == 0) {
+      this.minCost = 0;
+      return;
+    }
+    int[] values = new int[numRows];
+    long[] below = new long[numRows];
+    t.copyRow(numRows - 1, values);
+    for (int i = 0; i < numRows; ++i) {
+      below[i] = values[i];
+    }
+    for (int rowNo = numRows - 2; rowNo >= 0; --rowNo) {
+      t.copyRow(rowNo, values);
+      long rowOffset = Triangle.rowOffset(rowNo);
+      for (int i = 0; i <= rowNo; ++i) {
+        long left = below[i];
+        long right = below[i + 1];
+        if (left <= right) {
+          goesLeft.set(rowOffset + i);
+        }
+        if (right <= left) {
+          goesRight.set(rowOffset + i);
+        }
+        // below[i] is not needed again, but below[i + 1] still is
+        below[i] = values[i] + Math.min(left, right);
+      }
+    }
+    this.minCost = below[0];
+  }
+
+  /** Returns the length of the minimal paths (0 if the triangle is empty). */
+  long minCost() {
+    return minCost;
+  }
+
+  /**
+   * Returns the number of minimal paths (1 if the triangle is empty, for the empty path). The
+   * arithmetic is done in <code>long</code>s, and only redone with <code>BigInteger</code>s if they
+   * overflow.
+   */
+  BigInteger count() {
+    long count = countSaturated();
+    return count < Long.MAX_VALUE ? BigInteger.valueOf(count) : countExactly();
+  }
+
+  /**
+   * Returns the number of minimal paths, or <code>Long.MAX_VALUE</code> if there are at least that
+   * many.
+   */
+  long countSaturated() {
+    int numRows = t.size();
+    if (numRows == 0) {
+      return 1;
+    }
+    long[] counts = new long[numRows];
+    Arrays.fill(counts, 1);
+    for (int rowNo = numRows - 2; rowNo >= 0; --rowNo) {
+      long rowOffset = Triangle.rowOffset(rowNo);
+      for (int i = 0; i <= rowNo; ++i) {
+        long count = goesLeft.get(rowOffset + i) ? counts[i] : 0;
+        if (goesRight.get(rowOffset + i)) {
+          // saturates, as both are non-negative
+          count = count + counts[i + 1] < 0 ? Long.MAX_VALUE : count + counts[i + 1];
+        }
+        counts[i] = count;
+      }
+    }
+    return counts[0];
+  }
+
+  private BigInteger countExactly() {
+    int numRows = t.size();
+    BigInteger[] counts = new BigInteger[numRows];
+    Arrays.fill(counts, BigInteger.ONE);
+    for (int rowNo = numRows - 2; rowNo >= 0; --rowNo) {
+      long rowOffset = Triangle.rowOffset(rowNo);
+      for (int i = 0; i <= rowNo; ++i) {
+        BigInteger count = goesLeft.get(rowOffset + i) ? counts[i] : BigInteger.ZERO;
+        if (goesRight.get(rowOffset + i)) {
+          count = count.add(counts[i + 1]);
+        }
+        counts[i] = count;
+      }
+    }
+    return counts[0];
+  }
+
+  /**
+   * Returns an iterator over the minimal paths, each as the 0-based column of each of its values
+   * (see {@linkplain #values}), from the leftmost path (the one <code>TrianglePathFinder</code>
+   * finds) to the rightmost. Each path is found in time proportional to the number of rows, from
+   * the one before it. Each array returned is new, and can be kept.
+   */
+  @Override
+  public Iterator<int[]> iterator() {
+    return new PathIterator();
+  }
+
+  /** Returns the values along a path given as the column of each value. */
+  int[] values(int[] columns) {
+    int[] path = new int[columns.length];
+    for (int rowNo = 0; rowNo < columns.length; ++rowNo) {
+      path[rowNo] = t.get(rowNo, columns[rowNo]);
+    }
+    return path;
+  }
+
+  /** Walks the marked steps depth-first, keeping only the current path. */
+  private final class PathIterator implements Iterator<int[]> {
+    /** The next path to return, or null once they have all been returned. */
+    private int[] columns = new int[t.size()];
+
+    PathIterator() {
+      descendLeftmost(0);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return columns != null;
+    }
+
+    @Override
+    public int[] next() {
+      if (columns == null) {
+        throw new NoSuchElementException();
+      }
+      int[] path = columns.clone();
+      advance();
+      return path;
+    }
+
+    /** From the value in row <code>rowNo</code>, follow the leftmost marked steps to the base. */
+    private void descendLeftmost(int rowNo) {
+      for (; rowNo < columns.length - 1; ++rowNo) {
+        int colNo = columns[rowNo];
+        boolean left = goesLeft.get(Triangle.rowOffset(rowNo) + colNo);
+        columns[rowNo + 1] = left ? colNo : colNo + 1;
+      }
+    }
+
+    /**
+     * Move to the next path: the deepest step that went left where going right was also marked goes
+     * right instead, and the rest of the path below it keeps as far left as it can.
+     */
+    private void advance() {
+      for (int rowNo = columns.length - 2; rowNo >= 0; --rowNo) {
+        int colNo = columns[rowNo];
+        if (columns[rowNo + 1] == colNo && goesRight.get(Triangle.rowOffset(rowNo) + colNo)) {
+          columns[rowNo + 1] = colNo + 1;
+          descendLeftmost(rowNo + 1);
+          return;
+        }
+      }
+      columns = null;
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.davidconneely.triangle;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event for one phase of solving a triangle, see {@linkplain RunStats}. The
+ * events are recorded when the JVM is started with, for example, <code>
+ * -XX:StartFlightRecording=filename=triangle.jfr</code>, and cost next to nothing otherwise.
+ */
+@Category("Triangle")
+@StackTrace(false)
+abstract class PhaseEvent extends jdk.jfr.Event {
+  @Label("Rows")
+  int rows;
+
+  @Label("Cells")
+  @Description("The number of values in the triangle")
+  long cells;
+
+  @Label("Bytes Read")
+  @Description("The size of the input")
+  @DataAmount
+  long bytesRead;
+
+  @Label("Allocated")
+  @Description("The memory allocated by the thread running the phase")
+  @DataAmount
+  long allocatedBytes;
+
+  /** Reading the triangle into memory. */
+  @Name("com.davidconneely.triangle.Parse")
+  @Label("Parse Triangle")
+  static final class Parse extends PhaseEvent {}
+
+  /**
+   * Finding a minimal path, which includes reading the triangle in the modes that do not hold it in
+   * memory first.
+   */
+  @Name("com.davidconneely.triangle.Solve")
+  @Label("Solve Triangle")
+  static final class Solve extends PhaseEvent {}
+
+  /** Formatting and writing the minimal path. */
+  @Name("com.davidconneely.triangle.Output")
+  @Label("Output Path")
+  static final class Output extends PhaseEvent {}
+}
@@ -0,0 +1,134 @@
+package com.davidconneely.triangle;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Finds a minimal path through a text-format triangle while it is still being read, with the input
+ * parsed on one thread and the path found on another, so that the time taken is close to the longer
+ * of the two rather than their sum.
+ *
+ * <p>The parser thread reads each row into a buffer taken from a ring of {@value #RING_SIZE}
+ * buffers, and hands it to the solver thread (the calling thread), which adds it to a <code>
+ * StreamingPathFinder</code> and then hands the buffer back to be filled again. If the parser gets
+ * ahead, it waits for a buffer to be handed back, so no more than the ring of rows is ever waiting
+ * to be solved. The buffers are reused from row to row, and are only replaced (by one twice the
+ * size) when a row no longer fits, so nothing is allocated for most rows.
+ *
+ * <p>The top-down formulation of <code>StreamingPathFinder</code> is what makes this possible, as
+ * it can process each row as soon as it has been read. The path found is the same as the one <code>
+ * TrianglePathFinder</code> finds.
+ */
+final class PipelinedPathFinder {
+  /** The number of row buffers shared between the parser and the solver. */
+  static final int RING_SIZE = 16;
+
+  private final BlockingQueue<RowBuffer> free = new ArrayBlockingQueue<>(RING_SIZE);
+  private final BlockingQueue<RowBuffer> filled = new ArrayBlockingQueue<>(RING_SIZE);
+
+  private PipelinedPathFinder() {
+    for (int i = 0; i < RING_SIZE; ++i) {
+      free.add(new RowBuffer());
+    }
+  }
+
+  /**
+   * Returns the length of a minimal path through the triangle read by <code>tr</code>, keeping only
+   * one row of running totals.
+   *
+   * @throws IOException If an I/O error occurs.
+   * @throws TriangleShapeException If a line of triangle data is too short or too long.
+   * @throws TriangleValueException If a line of triangle data contains an invalid value.
+   */
+  static long findMinCost(TriangleReader tr) throws IOException {
+    StreamingPathFinder finder = new StreamingPathFinder(false);
+    new PipelinedPathFinder().run(tr, finder, null);
+    return finder.minCost();
+  }
+
+  /**
+   * Returns the values along a minimal path of the triangle read by <code>tr</code>. The rows are
+   * also added to <code>t</code>, which must be empty, on the solver thread, so that the values
+   * along the path can be picked out at the end without reading the input again.
+   *
+   * @throws IOException If an I/O error occurs.
+   * @throws TriangleShapeException If a line of triangle data is too short or too long.
+   * @throws TriangleValueException If a line of triangle data contains an invalid value.
+   */
+  static int[] findMinPath(TriangleReader tr, Triangle t) throws IOException {
+    StreamingPathFinder finder = new StreamingPathFinder();
+    new PipelinedPathFinder().run(tr, finder, t);
+    int[] path = finder.minPathColumns();
+    for (int rowNo = 0; rowNo < path.length; ++rowNo) {
+      path[rowNo] = t.get(rowNo, path[rowNo]);
+    }
+    return path;
+  }
+
+  /** Parse on a new thread, and add the rows to <code>finder</code> (and <code>t</code>) here. */
+  private void run(TriangleReader tr, StreamingPathFinder finder, Triangle t) throws IOException {
+    Thread parser = Thread.ofPlatform().name("triangle-parser").daemon().start(() -> parse(tr));
+    try {
+      while (true) {
+        RowBuffer buffer = filled.take();
+        if (buffer.error instanceof IOException ioe) {
+          throw ioe;
+        } else if (buffer.error instanceof RuntimeException re) {
+          throw re;
+        } else if (buffer.error instanceof Error e) {
+          throw e;
+        } else if (buffer.length < 0) {
+          break;
+        }
+        finder.addRow(buffer.values, buffer.length);
+        if (t != null) {
+          t.addRow(buffer.values, buffer.length);
+        }
+        free.put(buffer);
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while solving triangle");
+    } finally {
+      // stops the parser if it is still running because the solver failed
+      parser.interrupt();
+    }
+  }
+
+  /**
+   * Read rows into buffers from the ring until the end of the input, which is marked by a buffer
+   * with a negative length, or until an exception, which is passed on in a buffer.
+   */
+  private void parse(TriangleReader tr) {
+    try {
+      while (true) {
+        RowBuffer buffer = free.take();
+        try {
+          int needed = tr.rowsRead() + 1;
+          if (buffer.values.length < needed) {
+            buffer.values = new int[Math.max(needed, 2 * buffer.values.length)];
+          }
+          buffer.length = tr.readRow(buffer.values);
+        } catch (IOException | RuntimeException | Error e) {
+          // passed on, so that the solver does not wait for a row that will never come
+          buffer.error = e;
+        }
+        filled.put(buffer);
+        if (buffer.length < 0 || buffer.error != null) {
+          return;
+        }
+      }
+    } catch (InterruptedException ie) {
+      // the solver has given up
+    }
+  }
+
+  /** One buffer in the ring, holding a row (or the end of the input, or an exception). */
+  private static final class RowBuffer {
+    int[] values = new int[16];
+    int length;
+    Throwable error;
+  }
+}
@@ -0,0 +1,220 @@
+package com.davidconneely.triangle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the minimal paths found for triangle files, keyed by a hash of the contents of each
+ * file, so that a triangle that is solved again (under any name) is neither parsed nor solved.
+ *
+ * <p>The key is the SHA-256 hash of the bytes of the file, which is computed in a single pass over
+ * the file without parsing it, many times faster than the parse it saves. Two files only share a
+ * key if their bytes are the same, so a triangle with different spacing, or in the other format, is
+ * cached separately.
+ *
+ * <p>The paths are held in memory for up to <code>maxEntries</code> triangles, and once there are
+ * more, the least recently used are evicted. If there is a cache directory, each path is also
+ * written to a file in it named after the key, which is read back (into memory) when the path is no
+ * longer in memory, even by a later run. The directory is not bounded, and can be emptied at any
+ * time.
+ *
+ * <p>The methods are thread-safe.
+ */
+final class ResultCache {
+  private static final int HASH_BUFFER_SIZE = 1 << 16;
+
+  private final Map<String, int[]> memory;
+  private final Path dir;
+  private long hits;
+  private long diskHits;
+  private long misses;
+  private long evictions;
+  private long errors;
+
+  /**
+   * Holds up to <code>maxEntries</code> paths in memory, and all of them in <code>dir</code> too,
+   * if it is not null.
+   *
+   * @throws IOException If the directory cannot be created.
+   */
+  ResultCache(int maxEntries, Path dir) throws IOException {
+    this.memory =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+            if (size() > maxEntries) {
+              ++evictions;
+              return true;
+            }
+            return false;
+          }
+        };
+    this.dir = dir;
+    if (dir != null) {
+      Files.createDirectories(dir);
+    }
+  }
+
+  /**
+   * Returns the key for the triangle in <code>file</code>.
+   *
+   * @throws IOException If the file cannot be read.
+   */
+  static String key(Path file) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException nsae) {
+      // every Java platform is required to support SHA-256
+      throw new IllegalStateException(nsae);
+    }
+    try (FileChannel channel = FileChannel.open(file)) {
+      ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+      while (channel.read(buffer) >= 0) {
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+      }
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * Returns the values along the minimal path remembered for <code>key</code>, or null if there is
+   * none.
+   *
+   * @throws IOException If the path is in the cache directory but cannot be read.
+   */
+  int[] get(String key) throws IOException {
+    synchronized (this) {
+      int[] path = memory.get(key);
+      if (path != null) {
+        ++hits;
+        return path.clone();
+      }
+    }
+    int[] path = dir == null ? null : readPath(dir.resolve(key));
+    synchronized (this) {
+      if (path == null) {
+        ++misses;
+        return null;
+      }
+      ++diskHits;
+      memory.put(key, path);
+      return path.clone();
+    }
+  }
+
+  /**
+   * Remember the values along the minimal path for <code>key</code>.
+   *
+   * @throws IOException If the path cannot be written to the cache directory.
+   */
+  void put(String key, int[] path) throws IOException {
+    synchronized (this) {
+      memory.put(key, path.clone());
+    }
+    if (dir != null) {
+      writePath(dir.resolve(key), path);
+    }
+  }
+
+  synchronized long hits() {
+    return hits;
+  }
+
+  synchronized long diskHits() {
+    return diskHits;
+  }
+
+  synchronized long misses() {
+    return misses;
+  }
+
+  synchronized long evictions() {
+    return evictions;
+  }
+
+  /**
+   * Count a failure to read or write the cache directory, which a caller that uses the cache on a
+   * best-effort basis has carried on without.
+   */
+  synchronized void recordError() {
+    ++errors;
+  }
+
+  synchronized long errors() {
+    return errors;
+  }
+
+  /**
+   * Returns the counters, as <code>cache hits=3 disk_hits=1 misses=2 evictions=0 errors=0</code>.
+   */
+  synchronized String line() {
+    return "cache hits="
+        + hits
+        + " disk_hits="
+        + diskHits
+        + " misses="
+        + misses
+        + " evictions="
+        + evictions
+        + " errors="
+        + errors;
+  }
+
+  /** Returns the path in a cache file, or null if there is no such file. */
+  private static int[] readPath(Path file) throws IOException {
+    String text;
+    try {
+      text = Files.readString(file).strip();
+    } catch (NoSuchFileException nsfe) {
+      return null;
+    }
+    if (text.isEmpty()) {
+      return new int[0];
+    }
+    String[] values = text.split(" ");
+    int[] path = new int[values.length];
+    try {
+      for (int i = 0; i < values.length; ++i) {
+        path[i] = Integer.parseInt(values[i]);
+      }
+    } catch (NumberFormatException nfe) {
+      throw new IOException("Corrupt cache file: " + file, nfe);
+    }
+    return path;
+  }
+
+  /**
+   * Write the path to a cache file, as its values separated by spaces. The file is written under
+   * another name and then renamed, so that it is never seen half-written.
+   */
+  private static void writePath(Path file, int[] path) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int value : path) {
+      if (!sb.isEmpty()) {
+        sb.append(' ');
+      }
+      sb.append(value);
+    }
+    sb.append('\n');
+    Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      Files.writeString(temp, sb);
+      Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.davidconneely.triangle;
+
+/**
+ * Updates part of a row of running totals of the lengths of minimal remaining paths during backward
+ * induction (see <code>TrianglePathFinder</code>). Each value in the row has the lower of the two
+ * running totals below it added to it, and if the one to the right is strictly lower, a bit is set
+ * for the value in <code>goRight</code> (if that is not null) at <code>rowOffset</code> plus its
+ * column.
+ *
+ * <p>The running totals are kept either as <code>int</code>s, which is only done when it has been
+ * shown that they cannot overflow, or as <code>long</code>s, which cannot overflow for any triangle
+ * of 32-bit values with fewer than 2^31 rows. Either way, no addition needs to be checked.
+ *
+ * <p>There are two implementations that give exactly the same results: {@linkplain #SCALAR}, which
+ * works a value at a time, and <code>VectorRowKernel</code>, which works on several values at a
+ * time using the incubating Vector API. The one used is chosen when the program starts, see
+ * {@linkplain #select}.
+ */
+interface RowKernel {
+  /** Name of the system property that chooses the kernel, see {@linkplain #select}. */
+  String PROPERTY = "triangle.kernel";
+
+  /** Works a value at a time, and is always available. */
+  RowKernel SCALAR = new ScalarRowKernel();
+
+  /**
+   * Process the values from <code>from</code> (inclusive) to <code>to</code> (exclusive) of <code>
+   * rowRemaining</code>, given the <code>int</code> running totals for the row below, which the
+   * caller has made sure cannot overflow.
+   */
+  void processRow(
+      int[] rowRemainingBelow,
+      int[] rowRemaining,
+      DirectionBits goRight,
+      long rowOffset,
+      int from,
+      int to);
+
+  /**
+   * Process the values from <code>from</code> (inclusive) to <code>to</code> (exclusive) of a row,
+   * given the <code>long</code> running totals for the row below, writing the running totals for
+   * the row into <code>rowRemaining</code>.
+   */
+  void processRow(
+      long[] rowRemainingBelow,
+      int[] values,
+      long[] rowRemaining,
+      DirectionBits goRight,
+      long rowOffset,
+      int from,
+      int to);
+
+  /**
+   * Returns the kernel named by the <code>triangle.kernel</code> system property. The vector kernel
+   * is used by default, but only if the <code>jdk.incubator.vector</code> module has been added to
+   * the JVM (with <code>--add-modules jdk.incubator.vector</code>); otherwise, or if the property
+   * is <code>scalar</code>, the scalar kernel is used.
+   */
+  static RowKernel select() {
+    String name = System.getProperty(PROPERTY, "vector");
+    if (name.equals("vector") && isVectorAvailable()) {
+      return new VectorRowKernel();
+    }
+    return SCALAR;
+  }
+
+  /** Returns whether the Vector API module has been added to the JVM. */
+  static boolean isVectorAvailable() {
+    return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+  }
+}
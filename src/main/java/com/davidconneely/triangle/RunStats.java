@@ -0,0 +1,146 @@
+package com.davidconneely.triangle;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures the phases of solving a triangle (parse, solve and output), records each of them as a
+ * {@linkplain PhaseEvent}, and totals them up for the <code>--stats</code> line of <code>
+ * MinTrianglePath</code>, which is one line of <code>key=value</code> pairs:
+ *
+ * <pre>
+ * stats rows=4 cells=10 bytes_read=28 parse_ms=0.215 solve_ms=0.098 output_ms=0.041
+ *     rows_per_sec=11204 cells_per_sec=28011 peak_heap_bytes=4194304
+ * </pre>
+ *
+ * <p>(all on one line). The rates are over the time taken by all the phases together. The peak is
+ * the sum of the peaks of each heap memory pool since the <code>RunStats</code> was created, so it
+ * does not include a triangle that is memory-mapped; the allocation recorded in the events is only
+ * that of the thread running the phase, so it does not include the threads of a parallel reader.
+ *
+ * <p>Without <code>--stats</code>, only the events are needed, so {@linkplain #eventsOnly} neither
+ * starts the management beans nor reads the allocation counter (unless the event is being
+ * recorded).
+ */
+final class RunStats {
+  private static final String[] PHASE_NAMES = {"parse", "solve", "output"};
+
+  private final boolean measuring;
+  private final List<MemoryPoolMXBean> heapPools;
+  private final long[] phaseNanos = new long[PHASE_NAMES.length];
+  private int rows;
+  private long cells;
+  private long bytesRead;
+
+  /** Measure the phases for the stats line, as well as recording them as events. */
+  RunStats() {
+    this.measuring = true;
+    heapPools =
+        ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .toList();
+    heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+  }
+
+  private RunStats(boolean measuring) {
+    this.measuring = measuring;
+    this.heapPools = List.of();
+  }
+
+  /**
+   * Returns stats that only record the phases as events, for when there is to be no stats line (its
+   * {@linkplain #line} has no times or counts in it).
+   */
+  static RunStats eventsOnly() {
+    return new RunStats(false);
+  }
+
+  /** Start a phase, which is recorded as <code>event</code> when it ends. */
+  Phase begin(PhaseEvent event) {
+    return new Phase(event);
+  }
+
+  /** Returns the stats line. */
+  String line() {
+    long totalNanos = 0;
+    StringBuilder sb = new StringBuilder("stats");
+    sb.append(" rows=").append(rows);
+    sb.append(" cells=").append(cells);
+    sb.append(" bytes_read=").append(bytesRead);
+    for (int i = 0; i < PHASE_NAMES.length; ++i) {
+      sb.append(' ').append(PHASE_NAMES[i]).append("_ms=");
+      sb.append(String.format(Locale.ROOT, "%.3f", phaseNanos[i] / 1e6));
+      totalNanos += phaseNanos[i];
+    }
+    double seconds = Math.max(totalNanos, 1) / 1e9;
+    sb.append(" rows_per_sec=").append(Math.round(rows / seconds));
+    sb.append(" cells_per_sec=").append(Math.round(cells / seconds));
+    long peak = 0;
+    for (MemoryPoolMXBean pool : heapPools) {
+      peak += pool.getPeakUsage().getUsed();
+    }
+    sb.append(" peak_heap_bytes=").append(peak);
+    return sb.toString();
+  }
+
+  /** Returns the memory allocated by this thread so far, or 0 if the JVM cannot tell. */
+  private static long allocatedBytes() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean sunBean
+        && sunBean.isThreadAllocatedMemoryEnabled()) {
+      return sunBean.getCurrentThreadAllocatedBytes();
+    }
+    return 0;
+  }
+
+  private static int phaseIndex(PhaseEvent event) {
+    if (event instanceof PhaseEvent.Parse) {
+      return 0;
+    }
+    return event instanceof PhaseEvent.Solve ? 1 : 2;
+  }
+
+  /** A phase that has begun, and is to be ended on the same thread. */
+  final class Phase {
+    private final PhaseEvent event;
+
+    /** Whether the allocation counter was read at the start, so it can be read again at the end. */
+    private final boolean countingAllocated;
+
+    private final long startAllocated;
+    private final long startNanos;
+
+    private Phase(PhaseEvent event) {
+      this.event = event;
+      this.countingAllocated = measuring || event.isEnabled();
+      this.startAllocated = countingAllocated ? allocatedBytes() : 0;
+      this.startNanos = measuring ? System.nanoTime() : 0;
+      event.begin();
+    }
+
+    /**
+     * End the phase, having worked on a triangle of <code>numRows</code> rows, and read <code>
+     * inputBytes</code> bytes of input.
+     */
+    void end(int numRows, long inputBytes) {
+      event.end();
+      if (measuring) {
+        phaseNanos[phaseIndex(event)] += System.nanoTime() - startNanos;
+        rows = Math.max(rows, numRows);
+        cells = Triangle.rowOffset(rows);
+        bytesRead += inputBytes;
+      }
+      if (event.shouldCommit()) {
+        event.rows = numRows;
+        event.cells = Triangle.rowOffset(numRows);
+        event.bytesRead = inputBytes;
+        event.allocatedBytes = countingAllocated ? allocatedBytes() - startAllocated : 0;
+        event.commit();
+      }
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.davidconneely.triangle;
+
+/**
+ * A row kernel that works a value at a time, and is always available, see {@linkplain RowKernel}.
+ */
+final class ScalarRowKernel implements RowKernel {
+  @Override
+  public void processRow(
+      int[] rowRemainingBelow,
+      int[] rowRemaining,
+      DirectionBits goRight,
+      long rowOffset,
+      int from,
+      int to) {
+    // process the row of running totals of minimal remaining paths,
+    // and remember whether to walk left or right down to the next row
+    // (walk left if it doesn't matter).
+    for (int i = from; i < to; ++i) {
+      int lowestBelow = rowRemainingBelow[i];
+      if (rowRemainingBelow[i + 1] < lowestBelow) {
+        lowestBelow = rowRemainingBelow[i + 1];
+        if (goRight != null) {
+          goRight.set(rowOffset + i);
+        }
+      }
+      rowRemaining[i] += lowestBelow;
+    }
+  }
+
+  @Override
+  public void processRow(
+      long[] rowRemainingBelow,
+      int[] values,
+      long[] rowRemaining,
+      DirectionBits goRight,
+      long rowOffset,
+      int from,
+      int to) {
+    for (int i = from; i < to; ++i) {
+      long lowestBelow = rowRemainingBelow[i];
+      if (rowRemainingBelow[i + 1] < lowestBelow) {
+        lowestBelow = rowRemainingBelow[i + 1];
+        if (goRight != null) {
+          goRight.set(rowOffset + i);
+        }
+      }
+      rowRemaining[i] = values[i] + lowestBelow;
+    }
+  }
+}
@@ -0,0 +1,249 @@
+package com.davidconneely.triangle;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Finds minimal paths for clients that connect over a Unix domain socket, so that a JVM that has
+ * already started, and whose JIT compiler has already compiled the path finder, is reused from one
+ * triangle to the next. For a small triangle, almost all the time taken to run <code>
+ * MinTrianglePath</code> is spent starting the JVM, which this avoids.
+ *
+ * <p>Each connection carries a single request, which is one line naming a triangle file in either
+ * format:
+ *
+ * <pre>
+ * FILE /absolute/path/to/triangle
+ * </pre>
+ *
+ * <p>or one line followed by a text-format triangle, up to the end of the client's output:
+ *
+ * <pre>
+ * INLINE
+ * 7
+ * 6 3
+ * ...
+ * </pre>
+ *
+ * <p>The response is one line, of the exit status <code>MinTrianglePath</code> would have for the
+ * triangle and either the minimal path or what went wrong, separated by a tab (the same as <code>
+ * BatchSolver</code> outputs, without the file name). Each connection is handled on its own virtual
+ * thread.
+ *
+ * <p>The daemon reads any file that its user can read on behalf of any client that can connect, so
+ * the socket is made accessible only to its owner (where the file system supports it). This is
+ * best-effort: the permissions can only be changed once the socket exists, so for a moment after it
+ * is created it has the permissions given by the umask. Where that matters, put the socket in a
+ * directory that only its owner can enter.
+ */
+final class SolverDaemon implements AutoCloseable {
+  static final String FILE = "FILE";
+  static final String INLINE = "INLINE";
+
+  /** Longer request lines are refused, so that a client cannot make the daemon hold any amount. */
+  private static final int MAX_REQUEST_LINE = 4096;
+
+  private final Path socketPath;
+  private final ServerSocketChannel server;
+  private final ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+
+  private SolverDaemon(Path socketPath, ServerSocketChannel server) {
+    this.socketPath = socketPath;
+    this.server = server;
+  }
+
+  /**
+   * Returns a daemon listening on a new socket at <code>socketPath</code>. A socket left behind by
+   * a daemon that is no longer running is replaced, but nothing else that is already there.
+   *
+   * @throws IOException If the socket cannot be created, something other than a socket is at <code>
+   *     socketPath</code>, or another daemon is listening on it.
+   */
+  static SolverDaemon bind(Path socketPath) throws IOException {
+    BasicFileAttributes attributes;
+    try {
+      attributes =
+          Files.readAttributes(socketPath, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    } catch (NoSuchFileException nsfe) {
+      attributes = null;
+    }
+    if (attributes != null) {
+      if (!attributes.isOther()) {
+        throw new IOException("Not replacing " + socketPath + ", which is not a socket");
+      }
+      if (isListening(socketPath)) {
+        throw new IOException("A daemon is already listening on " + socketPath);
+      }
+      Files.delete(socketPath);
+    }
+    ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    try {
+      server.bind(UnixDomainSocketAddress.of(socketPath));
+      try {
+        Files.setPosixFilePermissions(socketPath, PosixFilePermissions.fromString("rw-------"));
+      } catch (UnsupportedOperationException uoe) {
+        // not a POSIX file system, so the socket keeps the default permissions
+      }
+    } catch (IOException | RuntimeException e) {
+      server.close();
+      throw e;
+    }
+    return new SolverDaemon(socketPath, server);
+  }
+
+  private static boolean isListening(Path socketPath) {
+    try {
+      SocketChannel.open(UnixDomainSocketAddress.of(socketPath)).close();
+      return true;
+    } catch (IOException ioe) {
+      return false;
+    }
+  }
+
+  /** Close the daemon (removing the socket) when the JVM is stopped, for example by Ctrl-C. */
+  void closeOnShutdown() {
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  try {
+                    close();
+                  } catch (IOException ioe) {
+                    // stopping anyway
+                  }
+                }));
+  }
+
+  /**
+   * Solve a triangle a number of times, so that the path finder has been compiled by the time the
+   * first client connects.
+   */
+  void warmUp() {
+    Triangle t = new Triangle();
+    int[] row = new int[500];
+    for (int rowNo = 0; rowNo < row.length; ++rowNo) {
+      for (int i = 0; i <= rowNo; ++i) {
+        row[i] = (rowNo * 31 + i * 17) % 100;
+      }
+      t.addRow(row, rowNo + 1);
+    }
+    for (int i = 0; i < 50; ++i) {
+      TrianglePathFinder.findMinPath(t);
+    }
+  }
+
+  /**
+   * Accept connections, and handle each of them on a new virtual thread, until the daemon is
+   * closed.
+   *
+   * @throws IOException If an I/O error occurs other than the daemon being closed.
+   */
+  void serve() throws IOException {
+    while (server.isOpen()) {
+      SocketChannel channel;
+      try {
+        channel = server.accept();
+      } catch (IOException ioe) {
+        if (!server.isOpen()) {
+          return;
+        }
+        throw ioe;
+      }
+      handlers.submit(() -> handle(channel));
+    }
+  }
+
+  private void handle(SocketChannel channel) {
+    try (channel;
+        InputStream is = new BufferedInputStream(Channels.newInputStream(channel));
+        OutputStream os = Channels.newOutputStream(channel)) {
+      String response;
+      try {
+        response = "0\t" + MinTrianglePath.formatPath(solve(readLine(is), is));
+      } catch (IOException | RuntimeException e) {
+        response = MinTrianglePath.exitStatus(e) + "\t" + BatchSolver.describe(e);
+      }
+      os.write((response + "\n").getBytes(StandardCharsets.UTF_8));
+    } catch (IOException ioe) {
+      // the client has gone away, so there is no one to tell
+    }
+  }
+
+  private static int[] solve(String request, InputStream is) throws IOException {
+    if (request.equals(INLINE)) {
+      return TrianglePathFinder.findMinPath(new TriangleReader(is).readTriangle());
+    } else if (request.startsWith(FILE + " ")) {
+      try (Triangle t = BatchSolver.read(Path.of(request.substring(FILE.length() + 1)))) {
+        return TrianglePathFinder.findMinPath(t);
+      }
+    }
+    throw new IOException("Unknown request: " + request);
+  }
+
+  /** Returns the request line, without reading any further. */
+  private static String readLine(InputStream is) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = is.read()) != '\n') {
+      if (b < 0 || line.size() == MAX_REQUEST_LINE) {
+        throw new IOException("Request line is missing or too long");
+      }
+      line.write(b);
+    }
+    return line.toString(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Send a request to the daemon listening at <code>socketPath</code>, for the triangle in <code>
+   * file</code> or, if it is null, for the text-format triangle read from <code>inline</code>.
+   * Returns the response line.
+   *
+   * @throws IOException If the daemon cannot be reached, or an I/O error occurs.
+   */
+  static String request(Path socketPath, Path file, InputStream inline) throws IOException {
+    try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+      OutputStream os = Channels.newOutputStream(channel);
+      if (file != null) {
+        // the daemon's working directory is not the client's
+        os.write((FILE + " " + file.toAbsolutePath() + "\n").getBytes(StandardCharsets.UTF_8));
+      } else {
+        os.write((INLINE + "\n").getBytes(StandardCharsets.UTF_8));
+        inline.transferTo(os);
+      }
+      channel.shutdownOutput();
+      String response =
+          new String(Channels.newInputStream(channel).readAllBytes(), StandardCharsets.UTF_8);
+      if (!response.endsWith("\n")) {
+        throw new IOException("The daemon closed the connection without responding");
+      }
+      return response.substring(0, response.length() - 1);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      server.close();
+      handlers.shutdownNow();
+    } finally {
+      Files.deleteIfExists(socketPath);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.davidconneely.triangle;
+
+/**
+ * Finds minimal paths through one triangle after another, like <code>TrianglePathFinder</code>, but
+ * reuses the same working memory (the rows of running totals and the direction bits) for each of
+ * them, so that a program that solves many triangles does not allocate it again every time. The
+ * buffers grow to fit the largest triangle solved so far, and are only shrunk by {@linkplain
+ * #trim}.
+ *
+ * <p>Once the buffers are big enough, {@linkplain #findMinPath(TriangleView, int[])} allocates
+ * nothing at all (given a JIT-compiled row kernel), as the path is written to an array the caller
+ * supplies. The triangle is only read, never copied.
+ *
+ * <p>A workspace must only be used by one thread at a time, and the rows are never split between
+ * threads.
+ */
+public final class SolverWorkspace {
+  private int[] intRow = new int[0];
+  private int[] otherIntRow = new int[0];
+  private long[] longRow = new long[0];
+  private long[] otherLongRow = new long[0];
+  private DirectionBits directionBits;
+  private long directionBitsCapacity;
+
+  /**
+   * Writes the values along a minimal path through <code>t</code> (the same path that <code>
+   * TrianglePathFinder.findMinPath</code> returns) to the start of <code>path</code>, and returns
+   * the length of the path (0 if the triangle has no rows).
+   *
+   * @throws IllegalArgumentException If <code>path</code> is shorter than the number of rows.
+   */
+  public long findMinPath(TriangleView t, int[] path) {
+    return TrianglePathFinder.findMinPath(
+        t,
+        path,
+        this,
+        null,
+        TrianglePathFinder.PARALLEL_MIN_WIDTH,
+        Integer.MAX_VALUE,
+        TrianglePathFinder.KERNEL);
+  }
+
+  /** Returns the values along a minimal path through <code>t</code>, in a new array. */
+  public int[] findMinPath(TriangleView t) {
+    int[] path = new int[t.size()];
+    findMinPath(t, path);
+    return path;
+  }
+
+  /** Returns the length of a minimal path through <code>t</code> (0 if it has no rows). */
+  public long findMinCost(TriangleView t) {
+    return TrianglePathFinder.findMinCost(t, this, TrianglePathFinder.KERNEL);
+  }
+
+  /** Returns about how many bytes the buffers take up. */
+  public long retainedBytes() {
+    long rowBytes =
+        (long) Integer.BYTES * (intRow.length + otherIntRow.length)
+            + (long) Long.BYTES * (longRow.length + otherLongRow.length);
+    return rowBytes + directionBitsCapacity / 8;
+  }
+
+  /**
+   * Let go of all the buffers if they take up more than <code>maxBytes</code> bytes, so that one
+   * unusually big triangle does not keep its working memory for as long as the workspace is kept.
+   * They are allocated again as they are needed.
+   */
+  public void trim(long maxBytes) {
+    if (retainedBytes() > maxBytes) {
+      intRow = new int[0];
+      otherIntRow = new int[0];
+      longRow = new long[0];
+      otherLongRow = new long[0];
+      directionBits = null;
+      directionBitsCapacity = 0;
+    }
+  }
+
+  int[] intRow(int length) {
+    if (intRow.length < length) {
+      intRow = new int[length];
+    }
+    return intRow;
+  }
+
+  int[] otherIntRow(int length) {
+    if (otherIntRow.length < length) {
+      otherIntRow = new int[length];
+    }
+    return otherIntRow;
+  }
+
+  long[] longRow(int length) {
+    if (longRow.length < length) {
+      longRow = new long[length];
+    }
+    return longRow;
+  }
+
+  long[] otherLongRow(int length) {
+    if (otherLongRow.length < length) {
+      otherLongRow = new long[length];
+    }
+    return otherLongRow;
+  }
+
+  /** Returns direction bits with (at least) the first <code>numBits</code> bits clear. */
+  DirectionBits directionBits(long numBits) {
+    if (directionBits == null || directionBitsCapacity < numBits) {
+      directionBits = new DirectionBits(numBits);
+      directionBitsCapacity = numBits;
+    } else {
+      directionBits.clear(numBits);
+    }
+    return directionBits;
+  }
+}
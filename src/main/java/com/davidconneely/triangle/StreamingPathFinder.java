@@ -0,0 +1,237 @@
+package com.davidconneely.triangle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Finds a minimal path through a triangle whose rows are given one at a time, from the vertex down,
+ * without the triangle ever being held in memory.
+ *
+ * <p>This works forwards rather than by backward induction (compare <code>TrianglePathFinder
+ * </code>): it keeps running totals of the lengths of the minimal paths from the vertex to each
+ * value in the last row given. Each value in a new row is reached from whichever of the two values
+ * above it has the lower running total, and that decision is recorded in one bit (see <code>
+ * DirectionBits</code>). Once all the rows have been given, the minimal path ends at the value in
+ * the bottom row with the lowest running total, and is retraced back up to the vertex using the
+ * recorded decisions. The working memory is one row of running totals plus one bit per value. The
+ * running totals are <code>long</code>s, which cannot overflow (the rows are not known in advance,
+ * so there is no way of telling that <code>int</code>s would be enough).
+ *
+ * <p>The path found is the same as the one <code>TrianglePathFinder</code> finds, the one that
+ * keeps left at every point where there is a choice between minimal paths. When the two values
+ * above a value have the same running total, the one to the upper left is chosen, and when several
+ * values in the bottom row have the lowest running total, the leftmost is chosen. This is enough
+ * because the minimal paths chosen to each value in a row never cross: two of them that met would
+ * have to share the same path above the meeting point, so one that is to the left of another at any
+ * point stays to the left of it.
+ *
+ * <p>If only the length of a minimal path is needed, the decisions need not be recorded at all, and
+ * the working memory is just the one row of running totals.
+ *
+ * <p>For a triangle so big that even one bit per value does not fit in memory, the decisions can be
+ * spilled to a temporary file instead (see <code>DirectionSpillFile</code>): each row's decisions
+ * are recorded in memory and then added to the end of the file, so the working memory is a few
+ * rows' worth, however many rows there are.
+ */
+final class StreamingPathFinder {
+  /** The decisions for the whole triangle, or for the current row only if they are spilled. */
+  private final DirectionBits fromLeft;
+
+  private final DirectionSpillFile spill;
+  private long[] totals = new long[16];
+  private int numRows;
+
+  /** The column of the leftmost lowest running total in the bottom row, kept up to date by rows. */
+  private int minColumn;
+
+  StreamingPathFinder() {
+    this(true);
+  }
+
+  /**
+   * If <code>recordPath</code> is false, only {@linkplain #minCost} can be used, and no memory is
+   * used to record the decisions made at each value.
+   */
+  StreamingPathFinder(boolean recordPath) {
+    fromLeft = recordPath ? new DirectionBits(64) : null;
+    spill = null;
+  }
+
+  /** Record the decisions made at each value in <code>spill</code>, rather than in memory. */
+  StreamingPathFinder(DirectionSpillFile spill) {
+    fromLeft = new DirectionBits(64);
+    this.spill = spill;
+  }
+
+  /**
+   * Add the first <code>length</code> values of <code>values</code> as the next row of the
+   * triangle, validating that it is of an appropriate length.
+   *
+   * @throws TriangleShapeException If the row is too short or too long.
+   */
+  void addRow(int[] values, int length) {
+    int rowNo = numRows;
+    if (length != rowNo + 1) {
+      throw new TriangleShapeException(length, rowNo + 1);
+    }
+    if (rowNo == 0) {
+      totals[0] = values[0];
+      numRows = 1;
+      minColumn = 0;
+      if (spill != null) {
+        // there is no decision at the vertex, but the bit keeps the rows in the usual places
+        fromLeft.clear(1);
+        spill.append(fromLeft, 1);
+      }
+      return;
+    }
+    if (totals.length < length) {
+      totals = Arrays.copyOf(totals, Math.max(length, 2 * totals.length));
+    }
+    // where the bit for the first value in the row goes
+    long firstBit = spill == null ? Triangle.rowOffset(rowNo) : 0;
+    if (fromLeft != null) {
+      fromLeft.ensureCapacity(firstBit + length);
+      if (spill != null) {
+        fromLeft.clear(length);
+      }
+      fromLeft.set(firstBit + rowNo);
+    }
+    // work right to left, so that the running totals for the row above
+    // are still there when they are needed; the values at each end of
+    // the row can only be reached from one value above them. The lowest
+    // total is found on the way (the leftmost, as ties replace it).
+    totals[rowNo] = values[rowNo] + totals[rowNo - 1];
+    int lowest = rowNo;
+    for (int i = rowNo - 1; i > 0; --i) {
+      long lowestAbove = totals[i];
+      if (totals[i - 1] <= lowestAbove) {
+        lowestAbove = totals[i - 1];
+        if (fromLeft != null) {
+          fromLeft.set(firstBit + i);
+        }
+      }
+      totals[i] = values[i] + lowestAbove;
+      if (totals[i] <= totals[lowest]) {
+        lowest = i;
+      }
+    }
+    totals[0] += values[0];
+    minColumn = totals[0] <= totals[lowest] ? 0 : lowest;
+    numRows = length;
+    if (spill != null) {
+      spill.append(fromLeft, length);
+    }
+  }
+
+  /** Returns the number of rows added so far. */
+  int size() {
+    return numRows;
+  }
+
+  /** Returns the length of a minimal path through the rows added so far (0 if there are none). */
+  long minCost() {
+    return numRows == 0 ? 0 : totals[minColumn];
+  }
+
+  /**
+   * Returns the 0-based column of each value along the minimal path through the rows added so far.
+   *
+   * @throws IllegalStateException If the decisions made at each value were not recorded.
+   */
+  int[] minPathColumns() {
+    if (fromLeft == null) {
+      throw new IllegalStateException("Path was not recorded");
+    }
+    int[] columns = new int[numRows];
+    if (numRows == 0) {
+      return columns;
+    }
+    int colNo = minColumn;
+    for (int rowNo = numRows - 1; rowNo >= 0; --rowNo) {
+      columns[rowNo] = colNo;
+      long index = Triangle.rowOffset(rowNo) + colNo;
+      if (rowNo > 0 && (spill == null ? fromLeft.get(index) : spill.get(index))) {
+        --colNo;
+      }
+    }
+    return columns;
+  }
+
+  /**
+   * Returns the length of a minimal path through the text-format triangle read by <code>tr</code>,
+   * reading each row once and keeping only one row of running totals.
+   *
+   * @throws IOException If an I/O error occurs.
+   * @throws TriangleShapeException If a line of triangle data is too short or too long.
+   * @throws TriangleValueException If a line of triangle data contains an invalid value.
+   */
+  static long findMinCost(TriangleReader tr) throws IOException {
+    StreamingPathFinder finder = new StreamingPathFinder(false);
+    int[] row = new int[16];
+    int length;
+    while ((length = tr.readRow(row)) >= 0) {
+      finder.addRow(row, length);
+      if (row.length == length) {
+        row = Arrays.copyOf(row, 2 * row.length);
+      }
+    }
+    return finder.minCost();
+  }
+
+  /**
+   * Returns the values along a minimal path of the text-format triangle in <code>file</code>. The
+   * file is read twice: once to find the path, and again to pick out the values along it, so that
+   * only one row of the triangle is ever held in memory.
+   *
+   * @throws IOException If an I/O error occurs.
+   * @throws TriangleShapeException If a line of triangle data is too short or too long.
+   * @throws TriangleValueException If a line of triangle data contains an invalid value.
+   */
+  static int[] findMinPath(Path file) throws IOException {
+    return findMinPath(file, new StreamingPathFinder());
+  }
+
+  /**
+   * Returns the same path as {@linkplain #findMinPath(Path)}, but with the decisions made at each
+   * value spilled to a temporary file, so that the memory used depends only on the width of the
+   * triangle.
+   *
+   * @throws IOException If an I/O error occurs.
+   * @throws TriangleShapeException If a line of triangle data is too short or too long.
+   * @throws TriangleValueException If a line of triangle data contains an invalid value.
+   */
+  static int[] findMinPathSpilled(Path file) throws IOException {
+    try (DirectionSpillFile spill = new DirectionSpillFile()) {
+      return findMinPath(file, new StreamingPathFinder(spill));
+    }
+  }
+
+  private static int[] findMinPath(Path file, StreamingPathFinder finder) throws IOException {
+    int[] row = new int[16];
+    try (InputStream is = Files.newInputStream(file)) {
+      TriangleReader tr = new TriangleReader(is);
+      int length;
+      while ((length = tr.readRow(row)) >= 0) {
+        finder.addRow(row, length);
+        if (row.length == length) {
+          row = Arrays.copyOf(row, 2 * row.length);
+        }
+      }
+    }
+    int[] path = finder.minPathColumns();
+    try (InputStream is = Files.newInputStream(file)) {
+      TriangleReader tr = new TriangleReader(is);
+      for (int rowNo = 0; rowNo < path.length; ++rowNo) {
+        if (tr.readRow(row) < 0) {
+          throw new IOException("File was truncated while it was being read: " + file);
+        }
+        path[rowNo] = row[path[rowNo]];
+      }
+    }
+    return path;
+  }
+}
@@ -1,18 +1,30 @@
 package com.davidconneely.triangle;
 
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.ListIterator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * Extremely simple class to hold the triangular numeric data. New rows of numeric data will always
  * be added to the bottom, and must always be of the right number of values.
  *
- * <p>The iterator methods return read-only iterators on the underlying collection.
+ * <p>The values are packed row after row, so the value at <code>(row, col)</code> is found at index
+ * <code>row*(row+1)/2 + col</code>. The index is a <code>long</code>, so a triangle can hold more
+ * than 2^31 values. By default the values are held in Java arrays, but a triangle can instead be
+ * backed by a memory-mapped file (see {@linkplain #createMapped} and {@linkplain #openMapped}) if
+ * it is too big for the Java heap; such a triangle should be closed when it is no longer needed.
+ * Values held in Java arrays take up only as many bytes as the widest of them needs (see <code>
+ * HeapTriangleStorage</code>).
  *
  * <p>Note that this class protects the "shape" of the triangle, but does not make any attempt to
- * protect the numeric values inside the triangle (for example by making defensive copies).
+ * protect the numeric values inside the triangle (though it can be frozen, see below). It does keep
+ * track of a range that all the values are within (see {@linkplain #minValue} and {@linkplain
+ * #maxValue}), so that a path finder can tell in advance how big its running totals can get.
+ *
+ * <p>A triangle that has been read can be frozen (see {@linkplain #freeze}), handing its values to
+ * a <code>FrozenTriangle</code> that cannot be changed, so that many threads can find paths through
+ * it at once without copying it or taking any locks.
  *
  * <p><b>Assumptions:</b>
  *
@@ -20,73 +32,298 @@ import java.util.ListIterator;
  *   <li>Values must be 32-bit signed integers only
  * </ul>
  */
-public final class Triangle implements Cloneable {
-  private final List<int[]> rows = new LinkedList<int[]>();
-  private final List<int[]> readOnlyRows = Collections.unmodifiableList(rows);
+public final class Triangle extends TriangleView implements Cloneable {
+  private TriangleStorage storage;
+  private int numRows;
+  private long numCells;
+  private int minValue = Integer.MAX_VALUE;
+  private int maxValue = Integer.MIN_VALUE;
+
+  public Triangle() {
+    this(HeapTriangleStorage.DEFAULT_CHUNK_BITS);
+  }
+
+  /** Only used directly by tests, to exercise rows that straddle chunk boundaries. */
+  Triangle(int chunkBits) {
+    this(HeapTriangleStorage.create(chunkBits, 0, 0), 0);
+  }
+
+  /**
+   * Wrap storage that already holds <code>numRows</code> complete rows of values. As nothing is
+   * known about the values, they are taken to be anywhere in the range of an <code>int</code>.
+   */
+  Triangle(TriangleStorage storage, int numRows) {
+    this(storage, numRows, Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Wrap storage that already holds <code>numRows</code> complete rows of values, all between
+   * <code>minValue</code> and <code>maxValue</code> (inclusive).
+   */
+  Triangle(TriangleStorage storage, int numRows, int minValue, int maxValue) {
+    this.storage = storage;
+    this.numRows = numRows;
+    this.numCells = rowOffset(numRows);
+    if (numRows > 0) {
+      this.minValue = minValue;
+      this.maxValue = maxValue;
+    }
+  }
 
   /**
-   * Add a row to the bottom of the triangle, validating that it is of an appropriate length. Note
-   * that the data added is not copied.
+   * Returns a new, empty triangle whose values are stored in <code>file</code> (which is created,
+   * or truncated if it already exists) rather than on the Java heap. The file holds the values as
+   * packed little-endian 32-bit integers, and can be opened again with {@linkplain #openMapped}
+   * after this triangle is closed.
+   */
+  public static Triangle createMapped(Path file) throws IOException {
+    return new Triangle(
+        MappedTriangleStorage.create(file, 0L, MappedTriangleStorage.DEFAULT_REGION_BITS), 0);
+  }
+
+  /**
+   * Returns a triangle whose values are mapped from a <code>file</code> written by a triangle from
+   * {@linkplain #createMapped}. The number of rows is worked out from the size of the file.
+   *
+   * @throws TriangleShapeException If the file does not hold a whole number of rows.
+   */
+  public static Triangle openMapped(Path file) throws IOException {
+    long fileSize = Files.size(file);
+    if (fileSize % Integer.BYTES != 0) {
+      throw new IOException("File does not hold a whole number of values: " + file);
+    }
+    long numCells = fileSize / Integer.BYTES;
+    int numRows = rowsForCells(numCells);
+    if (rowOffset(numRows) != numCells) {
+      // the last row is incomplete
+      throw new TriangleShapeException((int) (numCells - rowOffset(numRows)), numRows + 1);
+    }
+    return new Triangle(MappedTriangleStorage.open(file, 0L, numCells, true), numRows);
+  }
+
+  /**
+   * Returns a new, empty triangle whose values are stored in a temporary file in the default
+   * temporary-file directory, which is deleted when the triangle is closed.
+   */
+  static Triangle createMappedTemp() throws IOException {
+    return new Triangle(
+        MappedTriangleStorage.createTemp(null, MappedTriangleStorage.DEFAULT_REGION_BITS), 0);
+  }
+
+  /** Returns the index of the first value of <code>row</code> in the packed storage. */
+  static long rowOffset(int row) {
+    return (long) row * (row + 1) / 2;
+  }
+
+  /** Returns the number of complete rows in the first <code>numCells</code> packed values. */
+  static int rowsForCells(long numCells) {
+    // solve row*(row+1)/2 <= numCells, then correct for any floating-point error
+    long row = (long) ((Math.sqrt(8.0 * numCells + 1) - 1) / 2);
+    while (row * (row + 1) / 2 > numCells) {
+      --row;
+    }
+    while ((row + 1) * (row + 2) / 2 <= numCells) {
+      ++row;
+    }
+    return Math.toIntExact(row);
+  }
+
+  /**
+   * Add a row to the bottom of the triangle, validating that it is of an appropriate length. The
+   * values are copied into the triangle's own storage.
    */
   void addRow(int[] row) {
-    if (row.length != rows.size() + 1) {
-      throw new TriangleShapeException(row.length, rows.size() + 1);
+    addRow(row, row.length);
+  }
+
+  /** Add a row made up of the first <code>length</code> values of <code>values</code>. */
+  void addRow(int[] values, int length) {
+    if (length != numRows + 1) {
+      throw new TriangleShapeException(length, numRows + 1);
+    }
+    widenValueRange(values, length);
+    try {
+      storage.ensureCapacity(numCells + length);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+    storage.write(numCells, values, 0, length);
+    numCells += length;
+    ++numRows;
+  }
+
+  /**
+   * Add <code>count</code> rows of zeros to the bottom of the triangle, to be filled in afterwards
+   * with {@linkplain #setRow}. As the space for the rows is all allocated here, different threads
+   * can then fill in different rows at the same time, provided that {@linkplain #reserveValueRange}
+   * was called first with a range that holds all the values they will fill in.
+   */
+  void addZeroRows(int count) {
+    long newNumCells = rowOffset(Math.addExact(numRows, count));
+    if (count > 0) {
+      widenValueRange(0, 0);
+    }
+    try {
+      storage.ensureCapacity(newNumCells);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
     }
-    rows.add(row);
+    numRows += count;
+    numCells = newNumCells;
+  }
+
+  /** Returns the value at column <code>col</code> of row <code>row</code> (both 0-based). */
+  @Override
+  int get(int row, int col) {
+    return storage.get(cellIndex(row, col));
+  }
+
+  /** Replaces the value at column <code>col</code> of row <code>row</code> (both 0-based). */
+  void set(int row, int col, int value) {
+    long index = cellIndex(row, col);
+    widenValueRange(value, value);
+    storage.set(index, value);
   }
 
   /**
-   * Return an iterator over the rows positioned before the first row of data in the triangle. Note
-   * that although the row cannot be removed or changed, the values can be modified as the
-   * iterated-over arrays are the real data, not copies.
+   * Copies the <code>row+1</code> values of row <code>row</code> (0-based) into the start of <code>
+   * dest</code>, which must be at least that long.
    */
-  ListIterator<int[]> firstRowIterator() {
-    return readOnlyRows.listIterator();
+  @Override
+  void copyRow(int row, int[] dest) {
+    checkRow(row);
+    storage.read(rowOffset(row), dest, 0, row + 1);
   }
 
   /**
-   * Return an iterator over the rows positioned after the first row of data in the triangle. Note
-   * that although the row cannot be removed or changed, the values can be modified as the
-   * iterated-over arrays are the real data, not copies.
+   * Replaces the <code>row+1</code> values of row <code>row</code> (0-based) with the values at the
+   * start of <code>src</code>, which must be at least that long.
    */
-  ListIterator<int[]> lastRowIterator() {
-    return readOnlyRows.listIterator(readOnlyRows.size());
+  void setRow(int row, int[] src) {
+    checkRow(row);
+    widenValueRange(src, row + 1);
+    storage.write(rowOffset(row), src, 0, row + 1);
   }
 
   /** Returns the number of rows in the triangle. */
+  @Override
   int size() {
-    return rows.size();
+    return numRows;
+  }
+
+  /** Returns the number of values in the triangle. */
+  @Override
+  long cellCount() {
+    return numCells;
+  }
+
+  /**
+   * Returns a value that is no more than any value in the triangle. This is the lowest value that
+   * has ever been added to the triangle, so it may be lower than any value it holds now, if values
+   * have been replaced. It is <code>Integer.MAX_VALUE</code> if the triangle has no rows.
+   */
+  @Override
+  int minValue() {
+    return minValue;
+  }
+
+  /**
+   * Returns a value that is no less than any value in the triangle, in the same way as {@linkplain
+   * #minValue}. It is <code>Integer.MIN_VALUE</code> if the triangle has no rows.
+   */
+  @Override
+  int maxValue() {
+    return maxValue;
+  }
+
+  /** Returns the number of bytes of storage that each value takes up. */
+  @Override
+  int valueWidth() {
+    return storage.valueWidth();
+  }
+
+  /**
+   * Make sure that the storage can hold any value from <code>minValue</code> to <code>maxValue
+   * </code> (inclusive) without being widened, which would not be safe while different threads are
+   * filling in different rows. This does not change {@linkplain #minValue} or {@linkplain
+   * #maxValue}.
+   */
+  synchronized void reserveValueRange(int minValue, int maxValue) {
+    storage = storage.widen(minValue, maxValue, numCells);
+  }
+
+  /**
+   * Widen the range of values to take in the first <code>length</code> values of <code>values
+   * </code>, before they are stored, widening the storage too if it cannot hold them. These are
+   * synchronized, as different threads can fill in different rows at the same time (see {@linkplain
+   * #addZeroRows}).
+   */
+  private void widenValueRange(int[] values, int length) {
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+    for (int i = 0; i < length; ++i) {
+      min = Math.min(min, values[i]);
+      max = Math.max(max, values[i]);
+    }
+    widenValueRange(min, max);
+  }
+
+  private synchronized void widenValueRange(int min, int max) {
+    if (min < minValue) {
+      minValue = min;
+    }
+    if (max > maxValue) {
+      maxValue = max;
+    }
+    TriangleStorage widened = storage.widen(minValue, maxValue, numCells);
+    if (widened != storage) {
+      storage = widened;
+    }
+  }
+
+  /**
+   * Returns a frozen triangle holding the values in this one, which takes over their storage
+   * without copying it (see <code>FrozenTriangle</code>). This triangle is left empty, as if it had
+   * just been created (on the Java heap, whatever it was stored in before), so that it can be
+   * filled again; closing it does not close the storage the frozen triangle took over.
+   */
+  public FrozenTriangle freeze() {
+    if (storage == null) {
+      throw new IllegalStateException("Triangle is closed");
+    }
+    FrozenTriangle snapshot = new FrozenTriangle(storage, numRows, minValue, maxValue);
+    storage = HeapTriangleStorage.create(HeapTriangleStorage.DEFAULT_CHUNK_BITS, 0, 0);
+    numRows = 0;
+    numCells = 0;
+    minValue = Integer.MAX_VALUE;
+    maxValue = Integer.MIN_VALUE;
+    return snapshot;
   }
 
   /**
    * Create an independent copy of the Triangle. Changing the values in the cloned copy should have
-   * no impact on the original instance.
+   * no impact on the original instance. The copy is stored in the same way as the original (a copy
+   * of a memory-mapped triangle uses a temporary file that is deleted when the copy is closed).
    */
   @Override
   public Triangle clone() {
-    Triangle t = new Triangle();
-    ListIterator<int[]> it = firstRowIterator();
-    while (it.hasNext()) {
-      // int[] is cloneable
-      t.addRow(it.next().clone());
+    try {
+      return new Triangle(storage.copy(numCells), numRows, minValue, maxValue);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
     }
-    return t;
   }
 
   /**
-   * Used for debugging only - the returned value currently has extra trailing spaces on each line,
-   * and an extra trailing newline.
+   * Release any memory mapping and file held by the triangle. This does nothing for a triangle held
+   * on the Java heap. The triangle cannot be used after it is closed.
    */
   @Override
-  public String toString() {
-    StringBuilder sb = new StringBuilder();
-    for (int[] row : rows) {
-      for (int number : row) {
-        sb.append(number);
-        sb.append(' ');
-      }
-      sb.append('\n');
-    }
-    return sb.toString();
+  public void close() throws IOException {
+    TriangleStorage s = storage;
+    storage = null;
+    if (s != null) {
+      s.close(numCells);
+    }
   }
 }
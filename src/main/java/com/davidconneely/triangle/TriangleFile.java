@@ -0,0 +1,256 @@
+package com.davidconneely.triangle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads and writes triangles in a compact binary format, which can be loaded by memory-mapping the
+ * file rather than parsing it.
+ *
+ * <p>The file starts with a 40-byte header, and all multi-byte numbers are little-endian:
+ *
+ * <ul>
+ *   <li>8 bytes: the ASCII characters <code>TRIANGLE</code>
+ *   <li>4 bytes: format version, currently 2
+ *   <li>4 bytes: value width in bytes, currently always 4
+ *   <li>8 bytes: number of rows
+ *   <li>4 bytes: CRC-32C checksum of the values
+ *   <li>4 bytes: the lowest value
+ *   <li>4 bytes: the highest value
+ *   <li>4 bytes: reserved, always 0
+ * </ul>
+ *
+ * <p>The header is followed by the values, packed row after row in the same way as a <code>
+ * Triangle</code> holds them. Version 1 files, whose 32-byte header has no range of values (the
+ * reserved field follows the checksum), can still be opened.
+ */
+public final class TriangleFile {
+  static final int HEADER_SIZE = 40;
+  static final int VERSION = 2;
+  private static final int VERSION_1_HEADER_SIZE = 32;
+  private static final byte[] MAGIC = "TRIANGLE".getBytes(StandardCharsets.US_ASCII);
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  private TriangleFile() {}
+
+  /** Returns true if <code>file</code> starts with the binary format's header. */
+  public static boolean isBinary(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+      while (magic.hasRemaining() && channel.read(magic) >= 0) {
+        // keep reading until the buffer is full or the file ends
+      }
+      return !magic.hasRemaining() && Arrays.equals(magic.array(), MAGIC);
+    }
+  }
+
+  /**
+   * Map a binary-format triangle from <code>file</code>, without verifying its checksum. The values
+   * are not copied into the Java heap, but are paged in by the operating system as they are used,
+   * so opening it takes about the same time however big it is. The triangle is read-only, and
+   * should be closed when it is no longer needed.
+   *
+   * @throws IOException If an I/O error occurs, or the file is not in the binary format.
+   */
+  public static Triangle open(Path file) throws IOException {
+    return open(file, false);
+  }
+
+  /**
+   * Map a binary-format triangle from <code>file</code>, in the same way as {@linkplain
+   * #open(Path)}. If <code>verify</code> is set, every value is read first, to check them against
+   * the checksum and the range of values in the header (or to find the range, in a version 1 file),
+   * which takes time in proportion to the size of the file. A version 1 file that is not verified
+   * is taken to hold values anywhere in the range of an <code>int</code>.
+   *
+   * @throws IOException If an I/O error occurs, the file is not in the binary format, or it fails
+   *     to verify.
+   */
+  public static Triangle open(Path file, boolean verify) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+        // keep reading until the buffer is full or the file ends
+      }
+    }
+    int headerSize = header.position();
+    if (headerSize < VERSION_1_HEADER_SIZE
+        || !Arrays.equals(header.array(), 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+      throw new IOException("Not a binary triangle file: " + file);
+    }
+    header.position(MAGIC.length);
+    int version = header.getInt();
+    int valueWidth = header.getInt();
+    long numRows = header.getLong();
+    int checksum = header.getInt();
+    if ((version != 1 && version != VERSION) || valueWidth != Integer.BYTES) {
+      throw new IOException(
+          "Unsupported binary triangle file (version "
+              + version
+              + ", value width "
+              + valueWidth
+              + "): "
+              + file);
+    }
+    boolean hasRange = version != 1;
+    if (hasRange && headerSize < HEADER_SIZE) {
+      throw new IOException("Not a binary triangle file: " + file);
+    }
+    int minValue = hasRange ? header.getInt() : Integer.MIN_VALUE;
+    int maxValue = hasRange ? header.getInt() : Integer.MAX_VALUE;
+    if (numRows < 0 || numRows > Integer.MAX_VALUE || (numRows > 0 && minValue > maxValue)) {
+      throw new IOException("Corrupt binary triangle file (" + numRows + " rows): " + file);
+    }
+    long numCells = Triangle.rowOffset((int) numRows);
+    MappedTriangleStorage storage =
+        MappedTriangleStorage.open(
+            file, hasRange ? HEADER_SIZE : VERSION_1_HEADER_SIZE, numCells, false);
+    if (verify) {
+      try {
+        CRC32C crc = new CRC32C();
+        int[] range = storage.updateChecksum(crc, numCells);
+        if ((int) crc.getValue() != checksum) {
+          throw new IOException("Checksum mismatch in binary triangle file: " + file);
+        }
+        if (hasRange && numRows > 0 && (range[0] != minValue || range[1] != maxValue)) {
+          throw new IOException("Range mismatch in binary triangle file: " + file);
+        }
+        minValue = range[0];
+        maxValue = range[1];
+      } catch (IOException | RuntimeException e) {
+        storage.close(numCells);
+        throw e;
+      }
+    }
+    return new Triangle(storage, (int) numRows, minValue, maxValue);
+  }
+
+  /**
+   * Convert a text-format triangle to the binary format, one row at a time, so the triangle is
+   * never held in memory. <code>file</code> is only created (or replaced) once the whole triangle
+   * has been converted.
+   *
+   * @return the number of rows written.
+   * @throws IOException If an I/O error occurs.
+   * @throws TriangleShapeException If a line of triangle data is too short or too long.
+   * @throws TriangleValueException If a line of triangle data contains an invalid value.
+   */
+  public static int convert(TriangleReader tr, Path file) throws IOException {
+    try (Writer w = new Writer(file)) {
+      int[] row = new int[16];
+      int length;
+      while ((length = tr.readRow(row)) >= 0) {
+        w.writeRow(row, length);
+        if (row.length == tr.rowsRead()) {
+          row = Arrays.copyOf(row, 2 * row.length);
+        }
+      }
+      w.finish();
+      return w.numRows;
+    }
+  }
+
+  /** Write a triangle to <code>file</code> in the binary format. */
+  public static void write(TriangleView t, Path file) throws IOException {
+    try (Writer w = new Writer(file)) {
+      int[] row = new int[t.size()];
+      for (int rowNo = 0; rowNo < t.size(); ++rowNo) {
+        t.copyRow(rowNo, row);
+        w.writeRow(row, rowNo + 1);
+      }
+      w.finish();
+    }
+  }
+
+  /**
+   * Streams rows to a binary-format file through a large buffer. The rows are written to a
+   * temporary file in the same directory, and the header last, once the number of rows and the
+   * checksum are known. Only then is the temporary file moved into place, so the file is either
+   * left as it was or replaced by a whole triangle. The temporary file is deleted if it is closed
+   * without being finished (because the input was invalid, for example).
+   */
+  private static final class Writer implements AutoCloseable {
+    private final Path file;
+    private final Path tempFile;
+    private final FileChannel channel;
+    private boolean finished;
+    private final ByteBuffer buffer =
+        ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32C crc = new CRC32C();
+    private int numRows;
+    private int minValue = Integer.MAX_VALUE;
+    private int maxValue = Integer.MIN_VALUE;
+
+    Writer(Path file) throws IOException {
+      this.file = file;
+      Path dir = file.toAbsolutePath().getParent();
+      tempFile = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+      try {
+        channel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+        channel.position(HEADER_SIZE);
+      } catch (IOException | RuntimeException e) {
+        Files.deleteIfExists(tempFile);
+        throw e;
+      }
+    }
+
+    void writeRow(int[] values, int length) throws IOException {
+      for (int i = 0; i < length; ++i) {
+        if (!buffer.hasRemaining()) {
+          flush();
+        }
+        buffer.putInt(values[i]);
+        minValue = Math.min(minValue, values[i]);
+        maxValue = Math.max(maxValue, values[i]);
+      }
+      ++numRows;
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      crc.update(buffer.duplicate());
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    void finish() throws IOException {
+      flush();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      header.put(MAGIC);
+      header.putInt(VERSION);
+      header.putInt(Integer.BYTES);
+      header.putLong(numRows);
+      header.putInt((int) crc.getValue());
+      header.putInt(minValue);
+      header.putInt(maxValue);
+      header.putInt(0);
+      header.flip();
+      while (header.hasRemaining()) {
+        channel.write(header, header.position());
+      }
+      channel.close();
+      Files.move(
+          tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+      if (!finished) {
+        Files.deleteIfExists(tempFile);
+      }
+    }
+  }
+}
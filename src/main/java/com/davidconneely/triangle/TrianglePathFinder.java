@@ -1,9 +1,23 @@
 package com.davidconneely.triangle;
 
-import java.util.ListIterator;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-/** Find a minimal path through a triangle, see {@linkplain #findMinPath}. */
+/**
+ * Find a minimal path through a triangle, see {@linkplain #findMinPath}, or just its length, see
+ * {@linkplain #findMinCost}.
+ */
 public final class TrianglePathFinder {
+  /** Rows narrower than this are always processed by a single thread. */
+  static final int PARALLEL_MIN_WIDTH = 1 << 16;
+
+  /** Wide rows are split into segments of about this many values, one per fork-join task. */
+  private static final int SEGMENT_WIDTH = 1 << 13;
+
+  /** The row kernel chosen when the program starts, see {@linkplain RowKernel#select}. */
+  static final RowKernel KERNEL = RowKernel.select();
+
   /**
    * Returns the values along a minimal path from vertex to base of the <code>Triangle</code>
    * instance given using backward induction.
@@ -20,8 +34,10 @@ public final class TrianglePathFinder {
    * triangle the steps that always have a minimal path length down to the bottom.
    *
    * <p>To do this, we can keep track of running totals (as we move up the triangle) of the lengths
-   * of the minimal path from each value in each row to the bottom of the original triangle, by
-   * using an additional triangle structure.
+   * of the minimal path from each value in the current row to the bottom of the original triangle,
+   * which only needs one row of working storage. The triangle itself is not copied or modified;
+   * instead, the decision made at each value is recorded in one bit (see <code>DirectionBits
+   * </code>), which is all that is needed to walk back down the triangle afterwards.
    *
    * <p>Note that there can be multiple minimal paths through the triangle (if all values in the
    * triangle are equal, for example, or see <code>MinTrianglePathTest.testFindMinPathNonunique
@@ -31,60 +47,255 @@ public final class TrianglePathFinder {
    * point during the walk down the triangle where a choice could be made between the multiple
    * minimal paths (if there are any such points).
    */
-  public static int[] findMinPath(Triangle t) {
+  public static int[] findMinPath(TriangleView t) {
+    return findMinPath(t, null, PARALLEL_MIN_WIDTH, SEGMENT_WIDTH, KERNEL);
+  }
+
+  /**
+   * Returns the same minimal path as {@linkplain #findMinPath(TriangleView)}, but splits each wide
+   * row near the base of the triangle into segments that are processed at the same time by tasks on
+   * the fork-join <code>pool</code> given. The values in a row only depend on the row below, so the
+   * segments are independent of each other. Narrow rows are processed by the calling thread, as
+   * splitting them up would cost more than it saves.
+   */
+  public static int[] findMinPath(TriangleView t, ForkJoinPool pool) {
+    return findMinPath(t, pool, PARALLEL_MIN_WIDTH, SEGMENT_WIDTH, KERNEL);
+  }
+
+  /**
+   * Only used directly by tests, to split up rows narrower than the usual minimum, or to choose the
+   * row kernel.
+   */
+  static int[] findMinPath(
+      TriangleView t, ForkJoinPool pool, int minParallelWidth, int segmentWidth, RowKernel kernel) {
     // if there are no rows, then there is an empty minimal path
-    if (t.size() == 0) {
-      return new int[0];
+    int[] path = new int[t.size()];
+    findMinPath(t, path, new SolverWorkspace(), pool, minParallelWidth, segmentWidth, kernel);
+    return path;
+  }
+
+  /**
+   * Write the values along the same minimal path as {@linkplain #findMinPath(TriangleView)} to the
+   * start of <code>path</code>, using the buffers in <code>workspace</code>, and return its length
+   * (0 if there are no rows). Nothing is allocated other than when the buffers need to grow, or by
+   * the fork-join tasks if there is a <code>pool</code>.
+   */
+  static long findMinPath(
+      TriangleView t,
+      int[] path,
+      SolverWorkspace workspace,
+      ForkJoinPool pool,
+      int minParallelWidth,
+      int segmentWidth,
+      RowKernel kernel) {
+    int numRows = t.size();
+    if (path.length < numRows) {
+      throw new IllegalArgumentException(
+          "Path buffer has room for "
+              + path.length
+              + " values, but there are "
+              + numRows
+              + " rows");
     }
-    // create a copy of the triangle and get hold of its bottom row
-    Triangle tRemaining = t.clone();
-    ListIterator<int[]> itRemaining = tRemaining.lastRowIterator();
-    int[] rowRemainingBelow = itRemaining.previous();
-
-    while (itRemaining.hasPrevious()) {
-      int[] rowRemaining = itRemaining.previous();
-      // process the row of running totals of minimal remaining paths
-      for (int i = 0; i < rowRemaining.length; ++i) {
-        int lowestBelow = Math.min(rowRemainingBelow[i], rowRemainingBelow[i + 1]);
-        checkIntAdd(rowRemaining[i], lowestBelow);
-        rowRemaining[i] += lowestBelow;
-      }
-      rowRemainingBelow = rowRemaining;
+    if (numRows == 0) {
+      return 0;
     }
+    DirectionBits goRight = workspace.directionBits(Triangle.rowOffset(numRows - 1));
+    long total =
+        backwardInduction(t, workspace, goRight, pool, minParallelWidth, segmentWidth, kernel);
 
-    // now walk down the original triangle, always taking the path that has
-    // the lowest value in the corresponding position on the triangle of
-    // minimal remaining lengths
-    int[] path = new int[t.size()];
-    ListIterator<int[]> it = t.firstRowIterator();
-    itRemaining = tRemaining.firstRowIterator();
-
-    int rowNo = 0;
+    // now walk down the original triangle, following the recorded decisions
     int colNo = 0;
-    while (it.hasNext()) {
-      int[] rowValues = it.next();
-      int[] rowRemaining = itRemaining.next();
-      // decide whether to walk left or right down to the next row
-      // (walk left if it doesn't matter).
-      if (rowNo > 0 && rowRemaining[colNo] > rowRemaining[colNo + 1]) {
+    for (int rowNo = 0; rowNo < numRows; ++rowNo) {
+      if (rowNo > 0 && goRight.get(Triangle.rowOffset(rowNo - 1) + colNo)) {
         ++colNo;
       }
-      path[rowNo++] = rowValues[colNo];
+      path[rowNo] = t.get(rowNo, colNo);
     }
-    return path;
+    return total;
   }
 
   /**
-   * If <code>i+j</code> is likely to overflow or underflow, then throw an <code>ArithmeticException
-   * </code>. This is really being paranoid and in practice (if we know the range of values, for
-   * example) may not be necessary.
+   * Returns the length of a minimal path through the <code>Triangle</code> instance given (0 if it
+   * has no rows), using the same backward induction as {@linkplain #findMinPath} but without
+   * recording anything needed to retrace the path, so the only working memory is one row of running
+   * totals. The length is a <code>long</code>, as it may not fit in an <code>int</code>.
    */
-  private static final void checkIntAdd(int i, int j) {
-    if (i > 0 && j > Integer.MAX_VALUE - i) {
-      throw new ArithmeticException("Integer addition would overflow: " + i + " + " + j);
-    } else if (i < 0 && j < Integer.MIN_VALUE - i) {
-      throw new ArithmeticException(
-          "Integer addition would underflow: " + "(" + i + ") + (" + j + ")");
+  public static long findMinCost(TriangleView t) {
+    return findMinCost(t, KERNEL);
+  }
+
+  /** Only used directly by tests, to choose the row kernel. */
+  static long findMinCost(TriangleView t, RowKernel kernel) {
+    return findMinCost(t, new SolverWorkspace(), kernel);
+  }
+
+  /** Returns the length of a minimal path, using the buffers in <code>workspace</code>. */
+  static long findMinCost(TriangleView t, SolverWorkspace workspace, RowKernel kernel) {
+    return t.size() == 0
+        ? 0
+        : backwardInduction(t, workspace, null, null, PARALLEL_MIN_WIDTH, SEGMENT_WIDTH, kernel);
+  }
+
+  /**
+   * Returns the length of a minimal path through the text-format triangle read by <code>tr</code>,
+   * reading each row once, from the vertex down, and never holding more than one row of the
+   * triangle in memory (see <code>StreamingPathFinder</code>).
+   *
+   * @throws IOException If an I/O error occurs.
+   * @throws TriangleShapeException If a line of triangle data is too short or too long.
+   * @throws TriangleValueException If a line of triangle data contains an invalid value.
+   */
+  public static long findMinCost(TriangleReader tr) throws IOException {
+    return StreamingPathFinder.findMinCost(tr);
+  }
+
+  /**
+   * Work up from the bottom row of a non-empty triangle, keeping one row of running totals of the
+   * lengths of the minimal remaining paths, and return the total for the vertex. If <code>goRight
+   * </code> is not null, a bit is set in it for each value above the bottom row from which the
+   * minimal path continues down to the right. If <code>pool</code> is not null, rows at least
+   * <code>minParallelWidth</code> wide are split up between tasks on it, into segments of about
+   * <code>segmentWidth</code> values. Each row (or segment) is processed by <code>kernel</code>,
+   * and the rows of running totals are the buffers in <code>workspace</code>.
+   *
+   * <p>The running totals are kept as <code>int</code>s if the range of values in the triangle
+   * shows that they cannot overflow (see {@linkplain #intTotalsCannotOverflow}), and as <code>long
+   * </code>s otherwise, so no addition ever needs to be checked.
+   */
+  private static long backwardInduction(
+      TriangleView t,
+      SolverWorkspace workspace,
+      DirectionBits goRight,
+      ForkJoinPool pool,
+      int minParallelWidth,
+      int segmentWidth,
+      RowKernel kernel) {
+    int lastRowNo = t.size() - 1;
+    int[] rowRemaining = workspace.intRow(lastRowNo + 1);
+    if (intTotalsCannotOverflow(t.size(), t.minValue(), t.maxValue())) {
+      int[] rowRemainingBelow = workspace.otherIntRow(lastRowNo + 1);
+      t.copyRow(lastRowNo, rowRemainingBelow);
+      for (int rowNo = lastRowNo - 1; rowNo >= 0; --rowNo) {
+        t.copyRow(rowNo, rowRemaining);
+        int[] below = rowRemainingBelow;
+        int[] row = rowRemaining;
+        long rowOffset = Triangle.rowOffset(rowNo);
+        if (isParallel(rowNo + 1, pool, minParallelWidth)) {
+          processRow(
+              rowNo + 1,
+              rowOffset,
+              pool,
+              segmentWidth,
+              (from, to) -> kernel.processRow(below, row, goRight, rowOffset, from, to));
+        } else {
+          kernel.processRow(below, row, goRight, rowOffset, 0, rowNo + 1);
+        }
+        rowRemaining = rowRemainingBelow;
+        rowRemainingBelow = row;
+      }
+      return rowRemainingBelow[0];
+    }
+
+    // the values are read into rowRemaining, and the running totals
+    // are written to the long rows, which take turns being below.
+    long[] totalsBelow = workspace.longRow(lastRowNo + 1);
+    long[] totals = workspace.otherLongRow(lastRowNo + 1);
+    t.copyRow(lastRowNo, rowRemaining);
+    for (int i = 0; i <= lastRowNo; ++i) {
+      totalsBelow[i] = rowRemaining[i];
+    }
+    for (int rowNo = lastRowNo - 1; rowNo >= 0; --rowNo) {
+      t.copyRow(rowNo, rowRemaining);
+      long[] below = totalsBelow;
+      int[] values = rowRemaining;
+      long[] row = totals;
+      long rowOffset = Triangle.rowOffset(rowNo);
+      if (isParallel(rowNo + 1, pool, minParallelWidth)) {
+        processRow(
+            rowNo + 1,
+            rowOffset,
+            pool,
+            segmentWidth,
+            (from, to) -> kernel.processRow(below, values, row, goRight, rowOffset, from, to));
+      } else {
+        kernel.processRow(below, values, row, goRight, rowOffset, 0, rowNo + 1);
+      }
+      totals = totalsBelow;
+      totalsBelow = row;
+    }
+    return totalsBelow[0];
+  }
+
+  /**
+   * Returns whether the running totals for a triangle with <code>numRows</code> rows, whose values
+   * are all between <code>minValue</code> and <code>maxValue</code>, are sure to fit in an <code>
+   * int
+   * </code>. Each running total is the sum of at most <code>numRows</code> values, so it must be
+   * between <code>numRows*minValue</code> (or <code>minValue</code>, if that is positive) and
+   * <code>numRows*maxValue</code> (or <code>maxValue</code>, if that is negative). These products
+   * cannot overflow a <code>long</code>, and neither can any running total, which is why <code>
+   * long</code> running totals never need to be checked.
+   */
+  static boolean intTotalsCannotOverflow(int numRows, int minValue, int maxValue) {
+    long lowest = Math.min(minValue, (long) numRows * minValue);
+    long highest = Math.max(maxValue, (long) numRows * maxValue);
+    return lowest >= Integer.MIN_VALUE && highest <= Integer.MAX_VALUE;
+  }
+
+  /**
+   * Returns whether a row that is <code>width</code> values wide is split into segments on the
+   * <code>pool</code>, if there is one, rather than processed all at once on the calling thread
+   * (which does not allocate a segment for it).
+   */
+  private static boolean isParallel(int width, ForkJoinPool pool, int minParallelWidth) {
+    return pool != null && width >= minParallelWidth;
+  }
+
+  /** Process a row that is <code>width</code> values wide in segments on the <code>pool</code>. */
+  private static void processRow(
+      int width, long rowOffset, ForkJoinPool pool, int segmentWidth, Segment segment) {
+    pool.invoke(new RowTask(segment, rowOffset, segmentWidth, 0, width));
+  }
+
+  /** Processes the values of a row from <code>from</code> (inclusive) to <code>to</code>. */
+  @FunctionalInterface
+  private interface Segment {
+    void process(int from, int to);
+  }
+
+  /**
+   * Processes part of a wide row, splitting it in half until the parts are small enough. The split
+   * points are chosen so that different tasks never set bits in the same word of <code>goRight
+   * </code>.
+   */
+  private static final class RowTask extends RecursiveAction {
+    private final Segment segment;
+    private final long rowOffset;
+    private final int segmentWidth;
+    private final int from;
+    private final int to;
+
+    RowTask(Segment segment, long rowOffset, int segmentWidth, int from, int to) {
+      this.segment = segment;
+      this.rowOffset = rowOffset;
+      this.segmentWidth = segmentWidth;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      int mid = from + (to - from) / 2;
+      // round down to the start of a 64-bit word of direction bits
+      mid -= (int) ((rowOffset + mid) & 63);
+      if (to - from <= segmentWidth || mid <= from) {
+        segment.process(from, to);
+      } else {
+        invokeAll(
+            new RowTask(segment, rowOffset, segmentWidth, from, mid),
+            new RowTask(segment, rowOffset, segmentWidth, mid, to));
+      }
     }
   }
 }
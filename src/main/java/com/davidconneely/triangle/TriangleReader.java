@@ -2,9 +2,10 @@ package com.davidconneely.triangle;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.LineNumberReader;
 import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Reads triangular data from provided input. The specification isn't very detailed about the text
@@ -17,45 +18,189 @@ import java.io.Reader;
  *   <li>Values must be 32-bit signed integers only
  *   <li>Values can be separated by one or more space characters
  *   <li>Blank lines are not allowed in the input data
+ *   <li>Lines end with a line feed, a carriage return, or a carriage return followed by a line feed
+ *   <li>The charset encodes spaces, line endings, signs and ASCII digits as single ASCII bytes
  * </ul>
+ *
+ * <p>The input is scanned a byte at a time from a large reusable buffer, and values made up of
+ * ASCII digits are parsed in place, so reading a row does not allocate anything. Only a value that
+ * contains other bytes is decoded with the charset (which may give, for example, non-ASCII digits
+ * that are still a valid number, or the text of an invalid value for the exception message).
  */
 public final class TriangleReader {
-  private final LineNumberReader rdr;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final InputStream in;
+  private final Charset charset;
+  private byte[] buffer = new byte[BUFFER_SIZE];
+  private int pos;
+  private int limit;
+  private boolean skipLineFeed;
+  private int lineNo;
+  private int rowsRead;
 
   /**
    * Initialize from an <code>InputStream</code> instance, using the default charset to read
    * character data from it.
    */
   public TriangleReader(InputStream is) {
-    this(new InputStreamReader(is));
+    this(is, Charset.defaultCharset());
   }
 
-  /** Initialize from a <code>Reader</code> instance. */
+  /**
+   * Initialize from a <code>Reader</code> instance. The characters are encoded back into bytes
+   * before they are parsed, so this is slower than reading from an <code>InputStream</code>.
+   */
   TriangleReader(Reader rdr) {
-    this.rdr = new LineNumberReader(rdr);
+    this(new EncodingInputStream(rdr), StandardCharsets.UTF_8);
+  }
+
+  private TriangleReader(InputStream in, Charset charset) {
+    this(in, charset, 0);
+  }
+
+  /**
+   * Initialize from an <code>InputStream</code> instance that starts partway through the triangle,
+   * at the beginning of the line for the (0-based) row <code>firstRowNo</code>. The rows are
+   * checked for the right number of values, and line numbers are reported, as if the earlier rows
+   * had already been read.
+   */
+  TriangleReader(InputStream in, Charset charset, int firstRowNo) {
+    this.in = in;
+    this.charset = charset;
+    this.rowsRead = firstRowNo;
+    this.lineNo = firstRowNo;
+  }
+
+  /**
+   * Read the next row of the triangle into the start of <code>dest</code>, which must have room for
+   * at least <code>rowsRead()+1</code> values, validating that it has the right number of values.
+   *
+   * @return the number of values read (which is also the 1-based row number), or -1 at the end of
+   *     the input.
+   * @throws IOException If an I/O error occurs.
+   * @throws TriangleShapeException If the line of triangle data is too short or too long.
+   * @throws TriangleValueException If the line of triangle data contains an invalid value.
+   */
+  int readRow(int[] dest) throws IOException {
+    if (skipLineFeed) {
+      // the last line ended with a carriage return, which may be part of a CR LF pair
+      skipLineFeed = false;
+      if ((pos < limit || fill(pos)) && buffer[pos] == '\n') {
+        ++pos;
+      }
+    }
+    if (pos == limit && !fill(pos)) {
+      return -1;
+    }
+    ++lineNo;
+    int expected = rowsRead + 1;
+    int capacity = Math.min(expected, dest.length);
+    int numValues = 0;
+    while (pos < limit || fill(pos)) {
+      byte b = buffer[pos];
+      if (b == ' ') {
+        ++pos;
+      } else if (b == '\n') {
+        ++pos;
+        break;
+      } else if (b == '\r') {
+        ++pos;
+        skipLineFeed = true;
+        break;
+      } else {
+        // all the values are parsed (and checked) even when there are too
+        // many of them, but only the ones that fit in the row are kept.
+        int value = readValue(numValues + 1);
+        if (numValues < capacity) {
+          dest[numValues] = value;
+        }
+        ++numValues;
+      }
+    }
+    if (numValues != expected) {
+      throw new TriangleShapeException(numValues, expected);
+    }
+    return ++rowsRead;
   }
 
-  /** Read a line of space-separated numbers. */
-  private int[] readLine() throws IOException {
-    String line = rdr.readLine();
-    if (line == null) {
-      return null;
+  /**
+   * Parse the value starting at the current position, which ends at the next space, line ending or
+   * the end of the input.
+   */
+  private int readValue(int valueNo) throws IOException {
+    int start = pos;
+    boolean negative = false;
+    boolean asciiDigits = true;
+    int numDigits = 0;
+    long magnitude = 0;
+    while (true) {
+      if (pos == limit) {
+        // keep the bytes of the value so far, in case they are needed for the message
+        boolean more = fill(start);
+        start = 0;
+        if (!more) {
+          break;
+        }
+      }
+      byte b = buffer[pos];
+      if (b == ' ' || b == '\n' || b == '\r') {
+        break;
+      }
+      if (b >= '0' && b <= '9') {
+        // stop accumulating once it is out of range, so it cannot wrap around
+        if (magnitude <= Integer.MAX_VALUE + 1L) {
+          magnitude = magnitude * 10 + (b - '0');
+        }
+        ++numDigits;
+      } else if ((b == '-' || b == '+') && pos == start) {
+        negative = (b == '-');
+      } else {
+        asciiDigits = false;
+      }
+      ++pos;
     }
-    // " +" to allow one or more space chars as delimiters between values
-    String[] values = line.split(" +");
-    // ignore leading whitespace by skipping initial blank value
-    int firstValue = (values.length > 0 && values[0].length() == 0) ? 1 : 0;
-    int[] numbers = new int[values.length - firstValue];
-    for (int i = 0; i < numbers.length; ++i) {
-      String value = values[firstValue + i];
-      try {
-        numbers[i] = Integer.parseInt(value);
-      } catch (NumberFormatException nfe) {
-        // lineNumber is already the next line, so no need to +1 it.
-        throw new TriangleValueException(rdr.getLineNumber(), i + 1, value);
+    if (asciiDigits && numDigits > 0) {
+      if (negative && magnitude <= Integer.MAX_VALUE + 1L) {
+        return (int) -magnitude;
+      } else if (!negative && magnitude <= Integer.MAX_VALUE) {
+        return (int) magnitude;
       }
     }
-    return numbers;
+    String value = new String(buffer, start, pos - start, charset);
+    try {
+      // may still be valid, for example if the digits are not ASCII
+      return Integer.parseInt(value);
+    } catch (NumberFormatException nfe) {
+      throw new TriangleValueException(lineNo, valueNo, value);
+    }
+  }
+
+  /**
+   * Read more input into the buffer, keeping the bytes from <code>keepFrom</code> onwards (which
+   * are moved to the start of the buffer). Returns false at the end of the input.
+   */
+  private boolean fill(int keepFrom) throws IOException {
+    int kept = limit - keepFrom;
+    if (keepFrom > 0) {
+      System.arraycopy(buffer, keepFrom, buffer, 0, kept);
+    } else if (kept == buffer.length) {
+      // an enormous value - only possible in invalid input, but keep it all anyway
+      buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+    }
+    pos -= keepFrom;
+    limit = kept;
+    int n = in.read(buffer, limit, buffer.length - limit);
+    if (n < 0) {
+      return false;
+    }
+    limit += n;
+    return true;
+  }
+
+  /** Returns the number of rows read so far. */
+  int rowsRead() {
+    return rowsRead;
   }
 
   /**
@@ -66,12 +211,72 @@ public final class TriangleReader {
    * @throws TriangleShapeException If a line of triangle data is too short or too long.
    */
   public Triangle readTriangle() throws IOException {
-    Triangle t = new Triangle();
-    int[] row = readLine();
-    while (row != null) {
-      t.addRow(row);
-      row = readLine();
+    return readTriangle(new Triangle());
+  }
+
+  /**
+   * Read the triangle data from the input provided, adding the rows to an empty triangle (for
+   * example, one backed by a memory-mapped file).
+   *
+   * @return the <code>Triangle</code> instance given.
+   * @throws IOException If an I/O error occurs.
+   * @throws TriangleShapeException If a line of triangle data is too short or too long.
+   */
+  Triangle readTriangle(Triangle t) throws IOException {
+    int[] row = new int[16];
+    int length;
+    while ((length = readRow(row)) >= 0) {
+      t.addRow(row, length);
+      if (row.length == rowsRead) {
+        row = Arrays.copyOf(row, 2 * row.length);
+      }
     }
     return t;
   }
+
+  /**
+   * Adapts a <code>Reader</code> to the byte-level parser by encoding its characters as UTF-8. A
+   * high surrogate at the end of a chunk of characters is held back until the next chunk, so that
+   * surrogate pairs are encoded together.
+   */
+  private static final class EncodingInputStream extends InputStream {
+    private final Reader rdr;
+    private final char[] chars = new char[BUFFER_SIZE];
+    private int numChars;
+    private byte[] bytes = new byte[0];
+    private int bytesPos;
+
+    EncodingInputStream(Reader rdr) {
+      this.rdr = rdr;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : (b[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      while (bytesPos == bytes.length) {
+        int n = rdr.read(chars, numChars, chars.length - numChars);
+        if (n < 0 && numChars == 0) {
+          return -1;
+        }
+        int end = numChars + Math.max(n, 0);
+        int encodeEnd = end;
+        if (n >= 0 && end > 0 && Character.isHighSurrogate(chars[end - 1])) {
+          --encodeEnd;
+        }
+        bytes = new String(chars, 0, encodeEnd).getBytes(StandardCharsets.UTF_8);
+        bytesPos = 0;
+        numChars = end - encodeEnd;
+        System.arraycopy(chars, encodeEnd, chars, 0, numChars);
+      }
+      int n = Math.min(len, bytes.length - bytesPos);
+      System.arraycopy(bytes, bytesPos, b, off, n);
+      bytesPos += n;
+      return n;
+    }
+  }
 }
@@ -0,0 +1,48 @@
+package com.davidconneely.triangle;
+
+import java.io.IOException;
+
+/**
+ * Where a <code>Triangle</code> keeps its values. The values are packed row after row, so the value
+ * at <code>(row, col)</code> is found at index <code>row*(row+1)/2 + col</code>. Implementations
+ * only store values; all checks on the shape of the triangle are done by <code>Triangle</code>.
+ */
+interface TriangleStorage {
+  /** Make sure there is room for at least <code>minCells</code> values. */
+  void ensureCapacity(long minCells) throws IOException;
+
+  /** Returns the value at packed <code>index</code>. */
+  int get(long index);
+
+  /** Replaces the value at packed <code>index</code>. */
+  void set(long index, int value);
+
+  /** Copy <code>length</code> values starting at packed <code>index</code> into an array. */
+  void read(long index, int[] dest, int destPos, int length);
+
+  /**
+   * Copy <code>length</code> values from an array into the storage at packed <code>index</code>.
+   */
+  void write(long index, int[] src, int srcPos, int length);
+
+  /** Returns the number of bytes each value takes up. */
+  int valueWidth();
+
+  /**
+   * Returns storage that can hold values from <code>minValue</code> to <code>maxValue</code>
+   * (inclusive), holding the first <code>numCells</code> values of this storage. This is this
+   * storage itself if it can already hold them, as it always can if it holds <code>int</code>s.
+   */
+  default TriangleStorage widen(int minValue, int maxValue, long numCells) {
+    return this;
+  }
+
+  /** Returns an independent copy of the first <code>numCells</code> values. */
+  TriangleStorage copy(long numCells) throws IOException;
+
+  /**
+   * Release any resources held outside the Java heap. The first <code>numCells</code> values are
+   * the ones in use, so any storage beyond them can be discarded.
+   */
+  void close(long numCells) throws IOException;
+}
@@ -0,0 +1,90 @@
+package com.davidconneely.triangle;
+
+import java.io.IOException;
+
+/**
+ * The values of a triangle, as the path finders see them: they only ever read them. This is either
+ * a <code>Triangle</code>, whose values can still be changed, or a <code>FrozenTriangle</code>,
+ * whose values cannot. Both hold the values packed row after row (see <code>Triangle</code>).
+ */
+public abstract class TriangleView implements AutoCloseable {
+  /** Only extended by the two kinds of triangle in this package. */
+  TriangleView() {}
+
+  /** Returns the number of rows in the triangle. */
+  abstract int size();
+
+  /** Returns the number of values in the triangle. */
+  abstract long cellCount();
+
+  /** Returns the value at column <code>col</code> of row <code>row</code> (both 0-based). */
+  abstract int get(int row, int col);
+
+  /**
+   * Copies the <code>row+1</code> values of row <code>row</code> (0-based) into the start of <code>
+   * dest</code>, which must be at least that long.
+   */
+  abstract void copyRow(int row, int[] dest);
+
+  /**
+   * Returns a value that is no more than any value in the triangle. It is <code>Integer.MAX_VALUE
+   * </code> if the triangle has no rows.
+   */
+  abstract int minValue();
+
+  /**
+   * Returns a value that is no less than any value in the triangle. It is <code>Integer.MIN_VALUE
+   * </code> if the triangle has no rows.
+   */
+  abstract int maxValue();
+
+  /** Returns the number of bytes of storage that each value takes up. */
+  abstract int valueWidth();
+
+  /** Returns a copy of the values in row <code>row</code> (0-based). */
+  int[] getRow(int row) {
+    int[] values = new int[row + 1];
+    copyRow(row, values);
+    return values;
+  }
+
+  /**
+   * Release any memory mapping and file held by the triangle. This does nothing for a triangle held
+   * on the Java heap. The triangle cannot be used after it is closed.
+   */
+  @Override
+  public abstract void close() throws IOException;
+
+  /**
+   * Used for debugging only - the returned value currently has extra trailing spaces on each line,
+   * and an extra trailing newline.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (int row = 0; row < size(); ++row) {
+      for (int col = 0; col <= row; ++col) {
+        sb.append(get(row, col));
+        sb.append(' ');
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+
+  final void checkRow(int row) {
+    int numRows = size();
+    if (row < 0 || row >= numRows) {
+      throw new IndexOutOfBoundsException("Row " + row + " out of bounds for " + numRows + " rows");
+    }
+  }
+
+  /** Returns the index in the packed storage of the value at <code>(row, col)</code>. */
+  final long cellIndex(int row, int col) {
+    checkRow(row);
+    if (col < 0 || col > row) {
+      throw new IndexOutOfBoundsException("Column " + col + " out of bounds for row " + row);
+    }
+    return Triangle.rowOffset(row) + col;
+  }
+}
@@ -0,0 +1,85 @@
+package com.davidconneely.triangle;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A row kernel that uses the Vector API to work on as many values at a time as fit in the widest
+ * vector registers the processor has. The scalar loop is not vectorized by the JIT compiler because
+ * of the branch that sets a direction bit; here the bits for a whole vector of values come from a
+ * single comparison. The values that are left over at the end of a row are handed to the scalar
+ * kernel.
+ *
+ * <p>For <code>long</code> running totals, each vector of values is loaded as <code>int</code>s
+ * from a vector half as wide, and widened.
+ *
+ * <p>This class must only be loaded if the <code>jdk.incubator.vector</code> module is present, see
+ * {@linkplain RowKernel#select}.
+ */
+final class VectorRowKernel implements RowKernel {
+  private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Long> LONG_SPECIES = LongVector.SPECIES_PREFERRED;
+
+  /** Holds as many <code>int</code>s as <code>LONG_SPECIES</code> holds <code>long</code>s. */
+  private static final VectorSpecies<Integer> HALF_INT_SPECIES =
+      LONG_SPECIES.vectorBitSize() >= 128
+          ? VectorSpecies.of(int.class, VectorShape.forBitSize(LONG_SPECIES.vectorBitSize() / 2))
+          : null;
+
+  @Override
+  public void processRow(
+      int[] rowRemainingBelow,
+      int[] rowRemaining,
+      DirectionBits goRight,
+      long rowOffset,
+      int from,
+      int to) {
+    int length = INT_SPECIES.length();
+    int bound = from + INT_SPECIES.loopBound(to - from);
+    int i = from;
+    for (; i < bound; i += length) {
+      IntVector left = IntVector.fromArray(INT_SPECIES, rowRemainingBelow, i);
+      IntVector right = IntVector.fromArray(INT_SPECIES, rowRemainingBelow, i + 1);
+      IntVector.fromArray(INT_SPECIES, rowRemaining, i)
+          .add(left.min(right))
+          .intoArray(rowRemaining, i);
+      if (goRight != null) {
+        // walk right only if it is strictly lower (walk left if it doesn't matter)
+        goRight.setBits(rowOffset + i, right.compare(VectorOperators.LT, left).toLong(), length);
+      }
+    }
+    RowKernel.SCALAR.processRow(rowRemainingBelow, rowRemaining, goRight, rowOffset, i, to);
+  }
+
+  @Override
+  public void processRow(
+      long[] rowRemainingBelow,
+      int[] values,
+      long[] rowRemaining,
+      DirectionBits goRight,
+      long rowOffset,
+      int from,
+      int to) {
+    int i = from;
+    if (HALF_INT_SPECIES != null) {
+      int length = LONG_SPECIES.length();
+      int bound = from + LONG_SPECIES.loopBound(to - from);
+      for (; i < bound; i += length) {
+        LongVector left = LongVector.fromArray(LONG_SPECIES, rowRemainingBelow, i);
+        LongVector right = LongVector.fromArray(LONG_SPECIES, rowRemainingBelow, i + 1);
+        IntVector.fromArray(HALF_INT_SPECIES, values, i)
+            .convertShape(VectorOperators.I2L, LONG_SPECIES, 0)
+            .reinterpretAsLongs()
+            .add(left.min(right))
+            .intoArray(rowRemaining, i);
+        if (goRight != null) {
+          goRight.setBits(rowOffset + i, right.compare(VectorOperators.LT, left).toLong(), length);
+        }
+      }
+    }
+    RowKernel.SCALAR.processRow(rowRemainingBelow, values, rowRemaining, goRight, rowOffset, i, to);
+  }
+}
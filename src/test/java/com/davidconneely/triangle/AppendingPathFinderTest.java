@@ -0,0 +1,62 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.jupiter.api.Test;
+
+public final class AppendingPathFinderTest {
+
+  @Test
+  public void testAddRow_ProvidedExample() throws IOException {
+    Triangle t = new TriangleReader(new StringReader("7\n6 3")).readTriangle();
+    AppendingPathFinder finder = new AppendingPathFinder(t);
+    assertEquals(10, finder.minCost());
+    assertArrayEquals(new int[] {7, 3}, finder.findMinPath());
+    finder.addRow(new int[] {3, 8, 5}, 3);
+    assertEquals(15, finder.minCost());
+    assertArrayEquals(new int[] {7, 3, 5}, finder.findMinPath());
+    finder.addRow(new int[] {11, 2, 10, 9}, 4);
+    assertEquals(18, finder.minCost());
+    assertArrayEquals(new int[] {7, 6, 3, 2}, finder.findMinPath());
+    assertEquals(4, t.size());
+    assertEquals(4, finder.size());
+  }
+
+  @Test
+  public void testAddRow_EmptyTriangle() {
+    AppendingPathFinder finder = new AppendingPathFinder(new Triangle());
+    assertEquals(0, finder.minCost());
+    assertArrayEquals(new int[0], finder.findMinPath());
+    finder.addRow(new int[] {-4}, 1);
+    assertEquals(-4, finder.minCost());
+    assertArrayEquals(new int[] {-4}, finder.findMinPath());
+  }
+
+  @Test
+  public void testAddRow_CompareTrianglePathFinder() {
+    for (int ntry = 0; ntry < 10; ++ntry) {
+      Triangle source = TriangleTestUtils.makeRandomTriangle(ntry * 13 + 1, -5, ntry % 4);
+      Triangle t = new Triangle();
+      AppendingPathFinder finder = new AppendingPathFinder(t);
+      for (int rowNo = 0; rowNo < source.size(); ++rowNo) {
+        finder.addRow(source.getRow(rowNo), rowNo + 1);
+        // the path is the one a full solve would find after every row
+        assertArrayEquals(TrianglePathFinder.findMinPath(t), finder.findMinPath());
+        assertEquals(TrianglePathFinder.findMinCost(t), finder.minCost());
+      }
+    }
+  }
+
+  @Test
+  public void testAddRow_WrongLength() {
+    Triangle t = TriangleTestUtils.makeRandomTriangle(3, 0, 9);
+    AppendingPathFinder finder = new AppendingPathFinder(t);
+    assertThrows(TriangleShapeException.class, () -> finder.addRow(new int[] {1, 2, 3}, 3));
+    // nothing was added to either
+    assertEquals(3, t.size());
+    finder.addRow(new int[] {1, 2, 3, 4}, 4);
+    assertEquals(4, t.size());
+  }
+}
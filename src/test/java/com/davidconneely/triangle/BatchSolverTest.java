@@ -0,0 +1,155 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public final class BatchSolverTest {
+  private Path copyResource(Path dir, String name) throws IOException {
+    Path file = dir.resolve(name);
+    try (InputStream is = getClass().getResourceAsStream("/" + name)) {
+      Files.copy(is, file);
+    }
+    return file;
+  }
+
+  private static String[] solveAll(List<Path> files, int jobs, int expectedStatus)
+      throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (BatchSolver solver = new BatchSolver(jobs);
+        PrintStream out = new PrintStream(baos, true, StandardCharsets.UTF_8)) {
+      assertEquals(expectedStatus, solver.solveAll(files, out));
+    }
+    String output = baos.toString(StandardCharsets.UTF_8);
+    return output.isEmpty() ? new String[0] : output.split("\n");
+  }
+
+  @Test
+  public void testSolveAll_GoodAndBadFiles(@TempDir Path dir) throws IOException {
+    Path good1 = copyResource(dir, "goodfile1");
+    Path bad4 = copyResource(dir, "badfile4");
+    Path bad3 = copyResource(dir, "badfile3");
+    Path missing = dir.resolve("missing");
+    String[] lines = solveAll(List.of(good1, bad4, missing, good1, bad3), 2, 65);
+    assertEquals(5, lines.length);
+    assertEquals(good1 + "\t0\t7 + 6 + 3 + 2 = 18", lines[0]);
+    assertTrue(lines[1].startsWith(bad4 + "\t65\t"), lines[1]);
+    assertTrue(lines[2].startsWith(missing + "\t74\t"), lines[2]);
+    assertEquals(lines[0], lines[3]);
+    // badfile3 is a good triangle: the sum of all its values does not fit in an int, but the
+    // minimal path avoids the huge values, so its total is small
+    assertEquals(bad3 + "\t0\t6 + 8 + 1 + 3 = 18", lines[4]);
+    for (String line : lines) {
+      assertEquals(3, line.split("\t").length, line);
+    }
+  }
+
+  @Test
+  public void testSolveAll_ManyFiles(@TempDir Path dir) throws IOException {
+    // many more files than can be in progress at a time, in both formats
+    Path text = copyResource(dir, "goodfile2");
+    Path binary = dir.resolve("goodfile2.bin");
+    try (InputStream is = Files.newInputStream(text)) {
+      TriangleFile.convert(new TriangleReader(is), binary);
+    }
+    String expected;
+    try (Triangle t = TriangleFile.open(binary)) {
+      expected = MinTrianglePath.formatPath(TrianglePathFinder.findMinPath(t));
+    }
+    List<Path> files = new ArrayList<>();
+    for (int i = 0; i < 10 * BatchSolver.FILES_PER_JOB; ++i) {
+      files.add(i % 2 == 0 ? text : binary);
+    }
+    String[] lines = solveAll(files, 1, 0);
+    assertEquals(files.size(), lines.length);
+    for (int i = 0; i < lines.length; ++i) {
+      assertEquals(files.get(i) + "\t0\t" + expected, lines[i]);
+    }
+  }
+
+  @Test
+  public void testSolveAll_Cache(@TempDir Path dir) throws IOException {
+    Path good1 = copyResource(dir, "goodfile1");
+    Path copy = Files.copy(good1, dir.resolve("copy"));
+    Path bad4 = copyResource(dir, "badfile4");
+    ResultCache cache = new ResultCache(10, null);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (BatchSolver solver = new BatchSolver(1, cache);
+        PrintStream out = new PrintStream(baos, true, StandardCharsets.UTF_8)) {
+      // one at a time, so the copy is only solved after the original
+      assertEquals(0, solver.solveAll(List.of(good1), out));
+      assertEquals(65, solver.solveAll(List.of(copy, bad4, good1), out));
+    }
+    String[] lines = baos.toString(StandardCharsets.UTF_8).split("\n");
+    assertEquals(good1 + "\t0\t7 + 6 + 3 + 2 = 18", lines[0]);
+    assertEquals(copy + "\t0\t7 + 6 + 3 + 2 = 18", lines[1]);
+    assertTrue(lines[2].startsWith(bad4 + "\t65\t"), lines[2]);
+    assertEquals(lines[0], lines[3]);
+    // failures are not cached
+    assertEquals(2, cache.hits());
+    assertEquals(2, cache.misses());
+  }
+
+  @Test
+  public void testSolveAll_CacheErrors(@TempDir Path dir) throws IOException {
+    Path good1 = copyResource(dir, "goodfile1");
+    Path cacheDir = dir.resolve("cache");
+    ResultCache cache = new ResultCache(10, cacheDir);
+    // a corrupt entry is solved again, and replaced
+    Path entry = cacheDir.resolve(ResultCache.key(good1));
+    Files.writeString(entry, "7 six 3\n");
+    assertArrayEquals(new String[] {good1 + "\t0\t7 + 6 + 3 + 2 = 18"}, solveAll(cache, good1));
+    assertEquals("7 6 3 2\n", Files.readString(entry));
+    assertEquals(1, cache.errors());
+    // the path is still output when the cache directory cannot be written
+    Files.delete(entry);
+    Files.delete(cacheDir);
+    Files.writeString(cacheDir, "not a directory");
+    Path good2 = copyResource(dir, "goodfile2");
+    String[] lines = solveAll(cache, good2);
+    assertTrue(lines[0].startsWith(good2 + "\t0\t"), lines[0]);
+    // both reading and writing the entry failed
+    assertEquals(3, cache.errors());
+  }
+
+  private static String[] solveAll(ResultCache cache, Path file) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (BatchSolver solver = new BatchSolver(1, cache);
+        PrintStream out = new PrintStream(baos, true, StandardCharsets.UTF_8)) {
+      assertEquals(0, solver.solveAll(List.of(file), out));
+    }
+    return baos.toString(StandardCharsets.UTF_8).split("\n");
+  }
+
+  @Test
+  public void testSolveAll_NoFiles() throws IOException {
+    assertArrayEquals(new String[0], solveAll(List.of(), 1, 0));
+  }
+
+  @Test
+  public void testListFiles(@TempDir Path dir) throws IOException {
+    Path good2 = copyResource(dir, "goodfile2");
+    Path good1 = copyResource(dir, "goodfile1");
+    Files.createDirectory(dir.resolve("subdir"));
+    Path manifest = Files.createTempFile("triangles", ".txt");
+    try {
+      Files.writeString(manifest, good2 + "\n\n  " + good1 + "  \n");
+      assertEquals(
+          List.of(good1, good1, good2, good2, good1),
+          BatchSolver.listFiles(List.of(good1, dir), manifest));
+      assertEquals(List.of(good1, good2), BatchSolver.listFiles(List.of(dir), null));
+    } finally {
+      Files.delete(manifest);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public final class CheckpointedPathFinderTest {
+
+  @Test
+  public void testFindMinPath_ProvidedExample() {
+    Triangle t = new Triangle();
+    t.addRow(new int[] {7});
+    t.addRow(new int[] {6, 3});
+    t.addRow(new int[] {3, 8, 5});
+    t.addRow(new int[] {11, 2, 10, 9});
+    for (int interval = 1; interval <= 4; ++interval) {
+      assertArrayEquals(new int[] {7, 6, 3, 2}, CheckpointedPathFinder.findMinPath(t, interval));
+    }
+  }
+
+  @Test
+  public void testFindMinPath_EmptyAndSingleRow() {
+    assertArrayEquals(new int[0], CheckpointedPathFinder.findMinPath(new Triangle()));
+    Triangle t = new Triangle();
+    t.addRow(new int[] {-3});
+    assertArrayEquals(new int[] {-3}, CheckpointedPathFinder.findMinPath(t));
+  }
+
+  @Test
+  public void testFindMinPath_BadInterval() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> CheckpointedPathFinder.findMinPath(new Triangle(), 0));
+  }
+
+  @Test
+  public void testFindMinPath_CompareFindMinPath() {
+    // small values make for lots of equally-minimal paths, which checks that the
+    // same one is chosen, whether or not a band ends at the base or the row above
+    for (int ntry = 0; ntry < 100; ++ntry) {
+      Triangle t = TriangleTestUtils.makeRandomTriangle(ntry + 1, -2, 2 + ntry % 3);
+      int[] expected = TrianglePathFinder.findMinPath(t);
+      assertArrayEquals(expected, CheckpointedPathFinder.findMinPath(t));
+      for (int interval : new int[] {1, 2, 3, 7, ntry, ntry + 1, ntry + 5}) {
+        if (interval > 0) {
+          assertArrayEquals(expected, CheckpointedPathFinder.findMinPath(t, interval));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFindMinPath_LongTotals() {
+    // the totals would overflow an int
+    Triangle t =
+        TriangleTestUtils.makeRandomTriangle(70, Integer.MAX_VALUE - 100, Integer.MAX_VALUE);
+    assertArrayEquals(TrianglePathFinder.findMinPath(t), CheckpointedPathFinder.findMinPath(t, 9));
+  }
+
+  @Test
+  public void testMemoryEstimates() {
+    assertEquals(0, CheckpointedPathFinder.checkpointedBytes(0));
+    assertTrue(
+        CheckpointedPathFinder.checkpointedBytes(100) > CheckpointedPathFinder.directBytes(100));
+    assertTrue(
+        CheckpointedPathFinder.checkpointedBytes(1000) < CheckpointedPathFinder.directBytes(1000));
+    // 200,000 rows: about 2.3GiB of direction bits, but under 200MiB with checkpoints
+    assertTrue(CheckpointedPathFinder.directBytes(200_000) > 2_000_000_000L);
+    assertTrue(CheckpointedPathFinder.checkpointedBytes(200_000) < 200_000_000L);
+    assertFalse(CheckpointedPathFinder.exceedsBudget(1000, Long.MAX_VALUE));
+    assertTrue(CheckpointedPathFinder.exceedsBudget(1000, 0));
+    // checkpoints would take more memory for a small triangle, whatever the budget
+    assertFalse(CheckpointedPathFinder.exceedsBudget(100, 0));
+  }
+}
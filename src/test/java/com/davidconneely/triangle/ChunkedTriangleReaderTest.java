@@ -0,0 +1,130 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public final class ChunkedTriangleReaderTest {
+
+  /** Read the text with tiny chunks, so that most lines are in a chunk of their own. */
+  private static Triangle readChunked(Path dir, String text, long chunkSize) throws IOException {
+    Path file = dir.resolve("triangle.txt");
+    Files.writeString(file, text);
+    return ChunkedTriangleReader.readTriangle(
+        file, new Triangle(), ForkJoinPool.commonPool(), chunkSize);
+  }
+
+  private static void assertSameTriangle(Triangle t1, Triangle t2) {
+    assertEquals(t1.size(), t2.size());
+    for (int rowNo = 0; rowNo < t1.size(); ++rowNo) {
+      assertArrayEquals(t1.getRow(rowNo), t2.getRow(rowNo));
+    }
+  }
+
+  @Test
+  public void testReadTriangle_CompareTriangleReader(@TempDir Path dir) throws IOException {
+    Triangle t1 = TriangleTestUtils.makeRandomTriangle(200, -1000, 1000);
+    String text = t1.toString();
+    for (long chunkSize : new long[] {1, 7, 100, 1000, 1 << 20}) {
+      assertSameTriangle(t1, readChunked(dir, text, chunkSize));
+    }
+  }
+
+  @Test
+  public void testReadTriangle_LineEndings(@TempDir Path dir) throws IOException {
+    for (String text :
+        new String[] {
+          "7\r\n6 3\r\n3 8 5\r\n11 2 10 9\r\n",
+          "7\r6 3\r3 8 5\r11 2 10 9\r",
+          "7\n6 3\r\n3 8 5\r11 2 10 9",
+          "  7  \n  6 3  \n3 8 5\n11 2 10 9   "
+        }) {
+      for (long chunkSize = 1; chunkSize < text.length(); ++chunkSize) {
+        Triangle t = readChunked(dir, text, chunkSize);
+        assertEquals(4, t.size());
+        assertArrayEquals(new int[] {11, 2, 10, 9}, t.getRow(3));
+      }
+    }
+  }
+
+  @Test
+  public void testReadTriangle_EmptyFile(@TempDir Path dir) throws IOException {
+    assertEquals(0, readChunked(dir, "", 1).size());
+  }
+
+  @Test
+  public void testReadTriangle_FirstErrorReported(@TempDir Path dir) throws IOException {
+    // the blank line 3 comes before the invalid value on line 5
+    String text = "7\n6 3\n\n11 2 10 9\n1 2 splat 4 5\n";
+    try {
+      Triangle t = readChunked(dir, text, 2);
+      fail("No exception when row is empty: " + t.toString());
+    } catch (TriangleShapeException tse) {
+      assertTrue(tse.getLineNo() == 3 && tse.getNumValues() == 0);
+    }
+    text = "7\n6 3\n3 8 5\n11 2 10 9\n1 2 splat 4 5\n1 2 3\n";
+    try {
+      Triangle t = readChunked(dir, text, 2);
+      fail("No exception when non-numeric value: " + t.toString());
+    } catch (TriangleValueException tve) {
+      assertTrue(
+          tve.getLineNo() == 5 && tve.getValueNo() == 3 && "splat".equals(tve.getValueText()));
+    }
+  }
+
+  @Test
+  public void testReadTriangle_ManyShortLines(@TempDir Path dir) throws IOException {
+    // 100,000 lines would be a triangle of 5e9 values, which is not allocated
+    String text = "1\n".repeat(100_000);
+    try {
+      Triangle t = readChunked(dir, text, 1000);
+      fail("No exception when row is too short: " + t.size());
+    } catch (TriangleShapeException tse) {
+      assertTrue(tse.getLineNo() == 2 && tse.getNumValues() == 1);
+    }
+  }
+
+  @Test
+  public void testCanHoldRows() {
+    assertTrue(ChunkedTriangleReader.canHoldRows("7\n6 3\n3 8 5".length(), 3));
+    assertFalse(ChunkedTriangleReader.canHoldRows("7\n6 3\n3 8 5".length() - 1, 3));
+    assertTrue(ChunkedTriangleReader.canHoldRows(0, 0));
+    assertFalse(ChunkedTriangleReader.canHoldRows(Long.MAX_VALUE, 1L << 31));
+  }
+
+  @Test
+  public void testReadTriangle_LargeFile(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.txt");
+    Triangle t1 = TriangleTestUtils.makeRandomTriangle(1500, 0, 99);
+    Files.writeString(file, t1.toString());
+    assertTrue(Files.size(file) > 2 * ChunkedTriangleReader.MIN_CHUNK_SIZE);
+    assertSameTriangle(t1, ChunkedTriangleReader.readTriangle(file));
+    assertSameTriangle(
+        new TriangleReader(new StringReader(t1.toString())).readTriangle(),
+        ChunkedTriangleReader.readTriangle(file));
+  }
+
+  @Test
+  public void testReadTriangle_ValueWidth(@TempDir Path dir) throws IOException {
+    assertEquals(Byte.BYTES, readChunked(dir, "7\n6 3\n3 8 5\n11 2 10 9\n", 4).valueWidth());
+    assertEquals(Short.BYTES, readChunked(dir, "7\n6 -30\n3 8 5\n11 2 10 9\n", 4).valueWidth());
+    Triangle t = readChunked(dir, "7\n6 3\n3 8 5\n11 2 10 -2147483648\n", 4);
+    assertEquals(Integer.BYTES, t.valueWidth());
+    assertArrayEquals(new int[] {11, 2, 10, Integer.MIN_VALUE}, t.getRow(3));
+  }
+
+  @Test
+  public void testBoundForLength() {
+    assertEquals(0, ChunkedTriangleReader.boundForLength(0));
+    assertEquals(99, ChunkedTriangleReader.boundForLength(2));
+    assertEquals(999_999_999, ChunkedTriangleReader.boundForLength(9));
+    assertEquals(Integer.MAX_VALUE, ChunkedTriangleReader.boundForLength(10));
+    assertEquals(Integer.MAX_VALUE, ChunkedTriangleReader.boundForLength(100));
+  }
+}
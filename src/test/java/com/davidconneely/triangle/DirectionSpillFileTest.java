@@ -0,0 +1,69 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public final class DirectionSpillFileTest {
+
+  @Test
+  public void testAppendGet(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("bits");
+    Random random = new Random(21);
+    DirectionBits expected = new DirectionBits(64);
+    long numBits = 0;
+    // blocks of 4 words, so that there are lots of them
+    try (DirectionSpillFile spill = new DirectionSpillFile(file, 32)) {
+      DirectionBits row = new DirectionBits(64);
+      for (int rowNo = 0; rowNo < 100; ++rowNo) {
+        int length = rowNo + 1;
+        row.ensureCapacity(length);
+        row.clear(length);
+        expected.ensureCapacity(numBits + length);
+        for (int i = 0; i < length; ++i) {
+          if (random.nextBoolean()) {
+            row.set(i);
+            expected.set(numBits + i);
+          }
+        }
+        spill.append(row, length);
+        numBits += length;
+        // the bits can be read while there are still more to add
+        if (rowNo % 10 == 0) {
+          assertEquals(expected.get(numBits - 1), spill.get(numBits - 1));
+        }
+      }
+      // backwards, as a path is retraced
+      for (long index = numBits - 1; index >= 0; --index) {
+        assertEquals(expected.get(index), spill.get(index), "bit " + index);
+      }
+      // and forwards
+      for (long index = 0; index < numBits; ++index) {
+        assertEquals(expected.get(index), spill.get(index), "bit " + index);
+      }
+    }
+    assertFalse(Files.exists(file));
+  }
+
+  @Test
+  public void testStreamingPathFinder(@TempDir Path dir) throws IOException {
+    for (int ntry = 0; ntry < 20; ++ntry) {
+      Triangle t = TriangleTestUtils.makeRandomTriangle(ntry * 9 + 1, -5, ntry % 4);
+      try (DirectionSpillFile spill = new DirectionSpillFile(dir.resolve("bits"), 16)) {
+        StreamingPathFinder spilled = new StreamingPathFinder(spill);
+        StreamingPathFinder inMemory = new StreamingPathFinder();
+        for (int rowNo = 0; rowNo < t.size(); ++rowNo) {
+          spilled.addRow(t.getRow(rowNo), rowNo + 1);
+          inMemory.addRow(t.getRow(rowNo), rowNo + 1);
+        }
+        assertArrayEquals(inMemory.minPathColumns(), spilled.minPathColumns());
+        assertEquals(inMemory.minCost(), spilled.minCost());
+      }
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public final class IncrementalPathFinderTest {
+
+  @Test
+  public void testFindMinPath_ProvidedExample() throws IOException {
+    Triangle t = new TriangleReader(new StringReader("7\n6 3\n3 8 5\n11 2 10 9")).readTriangle();
+    IncrementalPathFinder finder = new IncrementalPathFinder(t);
+    assertArrayEquals(new int[] {7, 6, 3, 2}, finder.findMinPath());
+    assertEquals(18, finder.minCost());
+    // make the right-hand side cheaper
+    finder.update(3, 3, -20);
+    assertArrayEquals(new int[] {7, 3, 5, -20}, finder.findMinPath());
+    assertEquals(-5, finder.minCost());
+    finder.update(0, 0, 0);
+    assertEquals(-12, finder.minCost());
+    assertEquals(1, finder.lastUpdateCells());
+  }
+
+  @Test
+  public void testFindMinPath_EmptyTriangle() {
+    IncrementalPathFinder finder = new IncrementalPathFinder(new Triangle());
+    assertArrayEquals(new int[0], finder.findMinPath());
+    assertEquals(0, finder.minCost());
+  }
+
+  @Test
+  public void testUpdate_CompareTrianglePathFinder() {
+    Random random = new Random(17);
+    for (int ntry = 0; ntry < 20; ++ntry) {
+      Triangle t = TriangleTestUtils.makeRandomTriangle(ntry * 7 + 1, -10, 10);
+      IncrementalPathFinder finder = new IncrementalPathFinder(t);
+      for (int i = 0; i < 50; ++i) {
+        int row = random.nextInt(t.size());
+        int col = random.nextInt(row + 1);
+        // sometimes a big change, to make it spread to the vertex
+        int value = i % 5 == 0 ? random.nextInt(2001) - 1000 : random.nextInt(21) - 10;
+        finder.update(row, col, value);
+        assertEquals(value, t.get(row, col));
+        assertArrayEquals(TrianglePathFinder.findMinPath(t), finder.findMinPath());
+        assertEquals(TrianglePathFinder.findMinCost(t), finder.minCost());
+      }
+    }
+  }
+
+  @Test
+  public void testUpdate_StopsEarly() {
+    int numRows = 1000;
+    Triangle t = new Triangle();
+    int[] ones = new int[numRows];
+    Arrays.fill(ones, 1);
+    for (int rowNo = 0; rowNo < numRows; ++rowNo) {
+      t.addRow(ones, rowNo + 1);
+    }
+    IncrementalPathFinder finder = new IncrementalPathFinder(t);
+    // the same value again changes nothing
+    finder.update(numRows - 1, 500, 1);
+    assertEquals(1, finder.lastUpdateCells());
+    // raising a value on the base changes nothing above it, as each value above has an equal
+    // neighbour to go to instead
+    finder.update(numRows - 1, 500, 5);
+    assertEquals(3, finder.lastUpdateCells());
+    assertEquals(numRows, finder.minCost());
+    // lowering it changes everything in the cone above it
+    finder.update(numRows - 1, 500, -5);
+    long cone = 0;
+    for (int rowNo = numRows - 1; rowNo >= 0; --rowNo) {
+      cone += Math.min(500, rowNo) - Math.max(0, 500 - (numRows - 1 - rowNo)) + 1;
+    }
+    assertEquals(cone, finder.lastUpdateCells());
+    assertEquals(numRows - 6, finder.minCost());
+    assertArrayEquals(TrianglePathFinder.findMinPath(t), finder.findMinPath());
+  }
+
+  @Test
+  public void testUpdate_OutOfRange() {
+    IncrementalPathFinder finder =
+        new IncrementalPathFinder(TriangleTestUtils.makeRandomTriangle(4, 0, 9));
+    assertThrows(IndexOutOfBoundsException.class, () -> finder.update(4, 0, 1));
+    assertThrows(IndexOutOfBoundsException.class, () -> finder.update(2, 3, 1));
+  }
+}
@@ -0,0 +1,83 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public final class MinTrianglePathTest {
+
+  @Test
+  public void testIgnoredOption_TextTriangle() {
+    // each combination of options, and the one that would have no effect
+    String[][] ignored = {
+      {"--spill", "--spill"},
+      {"--spill --pipelined", "--spill"},
+      {"--streaming --pipelined", "--pipelined"},
+      {"--streaming --cost-only", "--cost-only"},
+      {"--off-heap --streaming", "--off-heap"},
+      {"--off-heap --streaming --spill", "--off-heap"},
+      {"--off-heap --cost-only", "--off-heap"},
+      {"--off-heap --cost-only --pipelined", "--off-heap"},
+      {"--parallel --streaming", "--parallel"},
+      {"--parallel --pipelined", "--parallel"},
+      {"--parallel --cost-only", "--parallel"},
+      {"--parallel --checkpointed", "--parallel"},
+      {"--checkpointed --streaming", "--checkpointed"},
+      {"--checkpointed --pipelined", "--checkpointed"},
+      {"--checkpointed --cost-only", "--checkpointed"},
+      {"--checkpointed --memory-budget", "--memory-budget"},
+      {"--memory-budget --streaming", "--memory-budget"},
+      {"--memory-budget --pipelined", "--memory-budget"},
+      {"--memory-budget --cost-only", "--memory-budget"},
+    };
+    for (String[] row : ignored) {
+      assertEquals(row[1], MinTrianglePath.ignoredOption(options(row[0]), false), row[0]);
+    }
+    String[] allowed = {
+      "",
+      "--off-heap",
+      "--streaming",
+      "--streaming --spill",
+      "--streaming --spill --stats",
+      "--pipelined",
+      "--pipelined --off-heap",
+      "--pipelined --cost-only",
+      "--cost-only",
+      "--parallel",
+      "--parallel --off-heap",
+      "--parallel --memory-budget",
+      "--checkpointed",
+      "--checkpointed --off-heap",
+      "--memory-budget --off-heap",
+    };
+    for (String row : allowed) {
+      assertNull(MinTrianglePath.ignoredOption(options(row), false), row);
+    }
+  }
+
+  @Test
+  public void testIgnoredOption_BinaryTriangle() {
+    String[][] ignored = {
+      {"--off-heap", "--off-heap"},
+      {"--streaming", "--streaming"},
+      {"--streaming --spill", "--streaming"},
+      {"--pipelined", "--pipelined"},
+      {"--pipelined --cost-only", "--pipelined"},
+      {"--parallel --cost-only", "--parallel"},
+    };
+    for (String[] row : ignored) {
+      assertEquals(row[1], MinTrianglePath.ignoredOption(options(row[0]), true), row[0]);
+    }
+    String[] allowed = {
+      "", "--cost-only", "--parallel", "--checkpointed", "--memory-budget --parallel", "--stats"
+    };
+    for (String row : allowed) {
+      assertNull(MinTrianglePath.ignoredOption(options(row), true), row);
+    }
+  }
+
+  private static Set<String> options(String options) {
+    return options.isEmpty() ? Set.of() : Set.of(options.split(" "));
+  }
+}
@@ -0,0 +1,108 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public final class MinimalPathIndexTest {
+
+  private static Triangle providedExample() {
+    Triangle t = new Triangle();
+    t.addRow(new int[] {7});
+    t.addRow(new int[] {6, 3});
+    t.addRow(new int[] {3, 8, 5});
+    t.addRow(new int[] {11, 2, 10, 9});
+    return t;
+  }
+
+  /** Returns the part of <code>t</code> below and including the value at row, col. */
+  private static Triangle subTriangle(Triangle t, int row, int col) {
+    Triangle sub = new Triangle();
+    for (int rowNo = row; rowNo < t.size(); ++rowNo) {
+      int[] values = new int[rowNo - row + 1];
+      for (int i = 0; i < values.length; ++i) {
+        values[i] = t.get(rowNo, col + i);
+      }
+      sub.addRow(values);
+    }
+    return sub;
+  }
+
+  @Test
+  public void testProvidedExample() {
+    MinimalPathIndex index = MinimalPathIndex.build(providedExample());
+    assertEquals(4, index.size());
+    assertEquals(18, index.minCostFrom(0, 0));
+    assertArrayEquals(new int[] {7, 6, 3, 2}, index.pathFrom(0, 0));
+    assertEquals(13, index.minCostFrom(1, 1));
+    assertArrayEquals(new int[] {3, 8, 2}, index.pathFrom(1, 1));
+    assertArrayEquals(new int[] {9}, index.pathFrom(3, 3));
+    assertThrows(IndexOutOfBoundsException.class, () -> index.minCostFrom(4, 0));
+    assertThrows(IndexOutOfBoundsException.class, () -> index.pathFrom(2, 3));
+  }
+
+  @Test
+  public void testCompareFindMinPath() {
+    // small values make for lots of ties, which must be broken to the left
+    for (int ntry = 0; ntry < 20; ++ntry) {
+      int maxValue = ntry % 4 == 0 ? Integer.MAX_VALUE : ntry % 4;
+      Triangle t = TriangleTestUtils.makeRandomTriangle(ntry + 1, 0, maxValue);
+      MinimalPathIndex index = MinimalPathIndex.build(t);
+      for (int row = 0; row < t.size(); ++row) {
+        for (int col = 0; col <= row; ++col) {
+          Triangle sub = subTriangle(t, row, col);
+          assertEquals(TrianglePathFinder.findMinCost(sub), index.minCostFrom(row, col));
+          assertArrayEquals(TrianglePathFinder.findMinPath(sub), index.pathFrom(row, col));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testBatchQueries() {
+    MinimalPathIndex index = MinimalPathIndex.build(providedExample());
+    int[] rows = {0, 1, 3};
+    int[] cols = {0, 1, 0};
+    assertArrayEquals(new long[] {18, 13, 11}, index.minCostsFrom(rows, cols));
+    int[][] paths = index.pathsFrom(rows, cols);
+    assertArrayEquals(new int[] {7, 6, 3, 2}, paths[0]);
+    assertArrayEquals(new int[] {3, 8, 2}, paths[1]);
+    assertArrayEquals(new int[] {11}, paths[2]);
+    assertThrows(IllegalArgumentException.class, () -> index.minCostsFrom(rows, new int[2]));
+  }
+
+  @Test
+  public void testSaveLoad(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.idx");
+    Triangle t = TriangleTestUtils.makeRandomTriangle(300, -1000, 1000);
+    MinimalPathIndex index = MinimalPathIndex.build(t);
+    index.save(file);
+    MinimalPathIndex loaded = MinimalPathIndex.load(file);
+    assertEquals(300, loaded.size());
+    for (int row = 0; row < t.size(); row += 7) {
+      for (int col = 0; col <= row; col += 3) {
+        assertEquals(index.minCostFrom(row, col), loaded.minCostFrom(row, col));
+        assertArrayEquals(index.pathFrom(row, col), loaded.pathFrom(row, col));
+      }
+    }
+    MinimalPathIndex.build(new Triangle()).save(file);
+    assertEquals(0, MinimalPathIndex.load(file).size());
+  }
+
+  @Test
+  public void testLoad_Corrupt(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.idx");
+    MinimalPathIndex.build(providedExample()).save(file);
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[MinimalPathIndex.HEADER_SIZE + 3] ^= 1;
+    Files.write(file, bytes);
+    IOException ioe = assertThrows(IOException.class, () -> MinimalPathIndex.load(file));
+    assertTrue(ioe.getMessage().startsWith("Checksum mismatch"));
+    Files.writeString(file, "7\n6 3\n");
+    assertThrows(IOException.class, () -> MinimalPathIndex.load(file));
+  }
+}
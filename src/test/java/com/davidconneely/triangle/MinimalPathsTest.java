@@ -0,0 +1,103 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.junit.jupiter.api.Test;
+
+public final class MinimalPathsTest {
+
+  /** Returns the columns of every minimal path, by trying every path, left to right. */
+  private static List<int[]> findAllMinPathsAltImpl(Triangle t) {
+    List<int[]> minPaths = new ArrayList<>();
+    long minLen = Long.MAX_VALUE;
+    for (int pathId = 0; pathId < 1 << (t.size() - 1); ++pathId) {
+      int[] columns = new int[t.size()];
+      long len = t.get(0, 0);
+      for (int rowNo = 1; rowNo < t.size(); ++rowNo) {
+        boolean right = (pathId & (1 << (t.size() - 1 - rowNo))) != 0;
+        columns[rowNo] = columns[rowNo - 1] + (right ? 1 : 0);
+        len += t.get(rowNo, columns[rowNo]);
+      }
+      if (len < minLen) {
+        minPaths.clear();
+        minLen = len;
+      }
+      if (len == minLen) {
+        minPaths.add(columns);
+      }
+    }
+    return minPaths;
+  }
+
+  @Test
+  public void testProvidedExample() throws IOException {
+    Triangle t = new TriangleReader(new StringReader("7\n6 3\n3 8 5\n11 2 10 9")).readTriangle();
+    MinimalPaths paths = new MinimalPaths(t);
+    assertEquals(18, paths.minCost());
+    assertEquals(BigInteger.ONE, paths.count());
+    Iterator<int[]> it = paths.iterator();
+    assertArrayEquals(new int[] {0, 0, 0, 1}, it.next());
+    assertFalse(it.hasNext());
+    assertThrows(NoSuchElementException.class, it::next);
+  }
+
+  @Test
+  public void testEmptyTriangle() {
+    MinimalPaths paths = new MinimalPaths(new Triangle());
+    assertEquals(0, paths.minCost());
+    assertEquals(1, paths.countSaturated());
+    Iterator<int[]> it = paths.iterator();
+    assertArrayEquals(new int[0], it.next());
+    assertFalse(it.hasNext());
+  }
+
+  @Test
+  public void testCompareAltImpl() {
+    for (int ntry = 0; ntry < 50; ++ntry) {
+      // small ranges of values, so that there are lots of ties
+      Triangle t = TriangleTestUtils.makeRandomTriangle(ntry % 12 + 1, 0, ntry % 3);
+      MinimalPaths paths = new MinimalPaths(t);
+      List<int[]> expected = findAllMinPathsAltImpl(t);
+      List<int[]> actual = new ArrayList<>();
+      paths.forEach(actual::add);
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); ++i) {
+        assertArrayEquals(expected.get(i), actual.get(i));
+      }
+      assertEquals(expected.size(), paths.countSaturated());
+      assertEquals(BigInteger.valueOf(expected.size()), paths.count());
+      assertEquals(TrianglePathFinder.findMinCost(t), paths.minCost());
+      assertArrayEquals(TrianglePathFinder.findMinPath(t), paths.values(actual.get(0)));
+    }
+  }
+
+  @Test
+  public void testCount_AllEqual() {
+    // every one of the 2^99 paths is minimal
+    Triangle t = new Triangle();
+    int[] row = new int[100];
+    Arrays.fill(row, 5);
+    for (int rowNo = 0; rowNo < row.length; ++rowNo) {
+      t.addRow(row, rowNo + 1);
+    }
+    MinimalPaths paths = new MinimalPaths(t);
+    assertEquals(500, paths.minCost());
+    assertEquals(BigInteger.TWO.pow(99), paths.count());
+    assertEquals(Long.MAX_VALUE, paths.countSaturated());
+    // the paths are produced lazily, left to right
+    Iterator<int[]> it = paths.iterator();
+    int[] first = it.next();
+    int[] second = it.next();
+    assertEquals(0, first[99]);
+    assertEquals(1, second[99]);
+    assertEquals(0, second[98]);
+  }
+}
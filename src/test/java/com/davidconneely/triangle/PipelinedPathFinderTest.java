@@ -0,0 +1,74 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import org.junit.jupiter.api.Test;
+
+public final class PipelinedPathFinderTest {
+
+  private static TriangleReader reader(String text) {
+    return new TriangleReader(new StringReader(text));
+  }
+
+  @Test
+  public void testFindMinPath_ProvidedExample() throws IOException {
+    Triangle t = new Triangle();
+    assertArrayEquals(
+        new int[] {7, 6, 3, 2},
+        PipelinedPathFinder.findMinPath(reader("7\n6 3\n3 8 5\n11 2 10 9"), t));
+    assertEquals(4, t.size());
+    assertEquals(18, PipelinedPathFinder.findMinCost(reader("7\n6 3\n3 8 5\n11 2 10 9")));
+  }
+
+  @Test
+  public void testFindMinPath_EmptyInput() throws IOException {
+    assertArrayEquals(new int[0], PipelinedPathFinder.findMinPath(reader(""), new Triangle()));
+    assertEquals(0, PipelinedPathFinder.findMinCost(reader("")));
+  }
+
+  @Test
+  public void testFindMinPath_CompareTrianglePathFinder() throws IOException {
+    // many more rows than buffers in the ring, so the buffers are reused
+    for (int ntry = 0; ntry < 20; ++ntry) {
+      Triangle t1 = TriangleTestUtils.makeRandomTriangle(ntry * 11 + 1, -5, ntry % 4);
+      Triangle t2 = new Triangle();
+      int[] path = PipelinedPathFinder.findMinPath(reader(t1.toString()), t2);
+      assertArrayEquals(TrianglePathFinder.findMinPath(t1), path);
+      assertEquals(
+          TrianglePathFinder.findMinCost(t1),
+          PipelinedPathFinder.findMinCost(reader(t1.toString())));
+    }
+  }
+
+  @Test
+  public void testFindMinPath_LargeExample() throws IOException {
+    Triangle t1;
+    try (InputStream is = getClass().getResourceAsStream("/goodfile3")) {
+      t1 = new TriangleReader(is).readTriangle();
+    }
+    try (InputStream is = getClass().getResourceAsStream("/goodfile3")) {
+      int[] path = PipelinedPathFinder.findMinPath(new TriangleReader(is), new Triangle());
+      assertArrayEquals(TrianglePathFinder.findMinPath(t1), path);
+    }
+  }
+
+  @Test
+  public void testFindMinPath_InvalidValue() throws IOException {
+    // the exception from the parser thread is thrown on the solver thread
+    try {
+      PipelinedPathFinder.findMinPath(reader("7\n6 3\n3 splat! 5\n11 2 10 9"), new Triangle());
+      fail("No exception for invalid value");
+    } catch (TriangleValueException tve) {
+      assertEquals(3, tve.getLineNo());
+    }
+    try {
+      PipelinedPathFinder.findMinCost(reader("7\n6 3\n3 8\n11 2 10 9"));
+      fail("No exception for short row");
+    } catch (TriangleShapeException tse) {
+      assertEquals(3, tse.getLineNo());
+    }
+  }
+}
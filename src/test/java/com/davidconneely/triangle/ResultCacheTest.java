@@ -0,0 +1,77 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public final class ResultCacheTest {
+
+  @Test
+  public void testKey(@TempDir Path dir) throws IOException {
+    Path file1 = Files.writeString(dir.resolve("a"), "7\n6 3\n3 8 5\n11 2 10 9\n");
+    Path file2 = Files.writeString(dir.resolve("b"), "7\n6 3\n3 8 5\n11 2 10 9\n");
+    Path file3 = Files.writeString(dir.resolve("c"), "7\n6 3\n3 8 5\n11 2 10 8\n");
+    assertEquals(ResultCache.key(file1), ResultCache.key(file2));
+    assertNotEquals(ResultCache.key(file1), ResultCache.key(file3));
+    assertEquals(64, ResultCache.key(file1).length());
+    assertThrows(IOException.class, () -> ResultCache.key(dir.resolve("missing")));
+  }
+
+  @Test
+  public void testGetPut_LeastRecentlyUsed() throws IOException {
+    ResultCache cache = new ResultCache(2, null);
+    assertNull(cache.get("a"));
+    cache.put("a", new int[] {1, 2});
+    cache.put("b", new int[] {3});
+    assertArrayEquals(new int[] {1, 2}, cache.get("a"));
+    // "b" is now the least recently used
+    cache.put("c", new int[0]);
+    assertNull(cache.get("b"));
+    assertArrayEquals(new int[] {1, 2}, cache.get("a"));
+    assertArrayEquals(new int[0], cache.get("c"));
+    assertEquals(3, cache.hits());
+    assertEquals(2, cache.misses());
+    assertEquals(1, cache.evictions());
+    assertEquals(0, cache.diskHits());
+    assertEquals("cache hits=3 disk_hits=0 misses=2 evictions=1 errors=0", cache.line());
+  }
+
+  @Test
+  public void testGetPut_CopiesPaths() throws IOException {
+    ResultCache cache = new ResultCache(2, null);
+    int[] path = {1, 2};
+    cache.put("a", path);
+    path[0] = 99;
+    cache.get("a")[1] = 99;
+    assertArrayEquals(new int[] {1, 2}, cache.get("a"));
+  }
+
+  @Test
+  public void testGetPut_Disk(@TempDir Path dir) throws IOException {
+    Path cacheDir = dir.resolve("cache");
+    ResultCache cache1 = new ResultCache(1, cacheDir);
+    cache1.put("a", new int[] {-1, 2, 3});
+    cache1.put("b", new int[0]);
+    // evicted from memory, but still on disk
+    assertArrayEquals(new int[] {-1, 2, 3}, cache1.get("a"));
+    assertEquals(1, cache1.diskHits());
+    // as if after a restart
+    ResultCache cache2 = new ResultCache(10, cacheDir);
+    assertArrayEquals(new int[0], cache2.get("b"));
+    assertArrayEquals(new int[] {-1, 2, 3}, cache2.get("a"));
+    assertArrayEquals(new int[] {-1, 2, 3}, cache2.get("a"));
+    assertEquals(2, cache2.diskHits());
+    assertEquals(1, cache2.hits());
+    assertNull(cache2.get("c"));
+    try (Stream<Path> files = Files.list(cacheDir)) {
+      assertEquals(2, files.count());
+    }
+    Files.writeString(cacheDir.resolve("d"), "1 x 3\n");
+    assertThrows(IOException.class, () -> cache2.get("d"));
+  }
+}
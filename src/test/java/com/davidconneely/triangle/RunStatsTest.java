@@ -0,0 +1,83 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public final class RunStatsTest {
+
+  @Test
+  public void testLine() {
+    RunStats stats = new RunStats();
+    RunStats.Phase parse = stats.begin(new PhaseEvent.Parse());
+    Triangle t = TriangleTestUtils.makeRandomTriangle(100, 0, 100);
+    parse.end(t.size(), 12345);
+    RunStats.Phase solve = stats.begin(new PhaseEvent.Solve());
+    int[] path = TrianglePathFinder.findMinPath(t);
+    solve.end(t.size(), 0);
+    stats.begin(new PhaseEvent.Output()).end(path.length, 0);
+    String line = stats.line();
+    Matcher m =
+        Pattern.compile(
+                "stats rows=100 cells=5050 bytes_read=12345 parse_ms=[0-9.]+ solve_ms=[0-9.]+"
+                    + " output_ms=[0-9.]+ rows_per_sec=([0-9]+) cells_per_sec=([0-9]+)"
+                    + " peak_heap_bytes=([0-9]+)")
+            .matcher(line);
+    assertTrue(m.matches(), line);
+    assertTrue(Long.parseLong(m.group(1)) > 0);
+    assertTrue(Long.parseLong(m.group(2)) >= Long.parseLong(m.group(1)));
+    assertTrue(Long.parseLong(m.group(3)) > 0);
+  }
+
+  /** Run three phases, recording only the parse and solve events, and return the events. */
+  private static List<RecordedEvent> recordPhases(Path dir, RunStats stats) throws IOException {
+    Path file = dir.resolve("phases.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(PhaseEvent.Parse.class);
+      recording.enable(PhaseEvent.Solve.class);
+      recording.disable(PhaseEvent.Output.class);
+      recording.start();
+      stats.begin(new PhaseEvent.Parse()).end(10, 200);
+      stats.begin(new PhaseEvent.Solve()).end(10, 0);
+      // disabled, so not recorded
+      stats.begin(new PhaseEvent.Output()).end(10, 0);
+      recording.stop();
+      recording.dump(file);
+    }
+    return RecordingFile.readAllEvents(file);
+  }
+
+  private static void assertEvents(List<RecordedEvent> events) {
+    assertEquals(2, events.size());
+    RecordedEvent parse = events.get(0);
+    assertEquals("com.davidconneely.triangle.Parse", parse.getEventType().getName());
+    assertEquals(10, parse.getInt("rows"));
+    assertEquals(55, parse.getLong("cells"));
+    assertEquals(200, parse.getLong("bytesRead"));
+    assertTrue(parse.getLong("allocatedBytes") >= 0);
+    assertEquals("com.davidconneely.triangle.Solve", events.get(1).getEventType().getName());
+    assertEquals(0, events.get(1).getLong("bytesRead"));
+  }
+
+  @Test
+  public void testEvents(@TempDir Path dir) throws IOException {
+    assertEvents(recordPhases(dir, new RunStats()));
+  }
+
+  @Test
+  public void testEventsOnly(@TempDir Path dir) throws IOException {
+    RunStats stats = RunStats.eventsOnly();
+    assertEvents(recordPhases(dir, stats));
+    // nothing was measured for the stats line
+    assertTrue(stats.line().startsWith("stats rows=0 cells=0 bytes_read=0 parse_ms=0.000"));
+  }
+}
@@ -0,0 +1,130 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public final class SolverDaemonTest {
+
+  private static InputStream inline(String text) {
+    return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Start a daemon on a new thread, and stop it (and check it stopped cleanly) when closed. */
+  private static final class RunningDaemon implements AutoCloseable {
+    final SolverDaemon daemon;
+    final Thread thread;
+    IOException error;
+
+    RunningDaemon(Path socket) throws IOException {
+      daemon = SolverDaemon.bind(socket);
+      thread =
+          Thread.ofPlatform()
+              .start(
+                  () -> {
+                    try {
+                      daemon.serve();
+                    } catch (IOException ioe) {
+                      error = ioe;
+                    }
+                  });
+    }
+
+    @Override
+    public void close() throws IOException {
+      daemon.close();
+      try {
+        thread.join(10_000);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+      assertFalse(thread.isAlive());
+      assertNull(error);
+    }
+  }
+
+  @Test
+  public void testRequest_FileAndInline(@TempDir Path dir) throws IOException {
+    Path socket = dir.resolve("daemon.sock");
+    Path file = dir.resolve("goodfile1");
+    try (InputStream is = getClass().getResourceAsStream("/goodfile1")) {
+      Files.copy(is, file);
+    }
+    try (RunningDaemon rd = new RunningDaemon(socket)) {
+      assertTrue(rd.thread.isAlive());
+      assertEquals("0\t7 + 6 + 3 + 2 = 18", SolverDaemon.request(socket, file, null));
+      assertEquals(
+          "0\t7 + 6 + 3 + 2 = 18",
+          SolverDaemon.request(socket, null, inline("7\n6 3\n3 8 5\n11 2 10 9\n")));
+      assertEquals("0\t = 0", SolverDaemon.request(socket, null, inline("")));
+      // the same daemon handles one request after another
+      for (int i = 0; i < 20; ++i) {
+        assertEquals("0\t1 + 2 = 3", SolverDaemon.request(socket, null, inline("1\n2 3\n")));
+      }
+    }
+    assertFalse(Files.exists(socket));
+  }
+
+  @Test
+  public void testRequest_Errors(@TempDir Path dir) throws IOException {
+    Path socket = dir.resolve("daemon.sock");
+    try (RunningDaemon rd = new RunningDaemon(socket)) {
+      assertTrue(rd.thread.isAlive());
+      assertTrue(
+          SolverDaemon.request(socket, null, inline("7\n6 3\n3 splat! 5\n")).startsWith("65\t"));
+      assertTrue(SolverDaemon.request(socket, null, inline("7\n6\n")).startsWith("65\t"));
+      assertTrue(SolverDaemon.request(socket, dir.resolve("missing"), null).startsWith("74\t"));
+      // the daemon is still running after the errors
+      assertEquals("0\t1 + 2 = 3", SolverDaemon.request(socket, null, inline("1\n2 3\n")));
+    }
+    try {
+      SolverDaemon.request(socket, null, inline("1\n"));
+      fail("No exception when there is no daemon");
+    } catch (IOException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testBind_ReplacesStaleSocket(@TempDir Path dir) throws IOException {
+    Path socket = dir.resolve("daemon.sock");
+    // a socket that is left behind when its server is closed
+    try (ServerSocketChannel stale = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      stale.bind(UnixDomainSocketAddress.of(socket));
+    }
+    assertTrue(Files.exists(socket));
+    try (RunningDaemon rd = new RunningDaemon(socket)) {
+      assertTrue(rd.thread.isAlive());
+      try {
+        SolverDaemon.bind(socket);
+        fail("No exception when a daemon is already listening");
+      } catch (IOException expected) {
+        assertTrue(expected.getMessage().contains("already listening"));
+      }
+      assertEquals("0\t1 + 2 = 3", SolverDaemon.request(socket, null, inline("1\n2 3\n")));
+    }
+  }
+
+  @Test
+  public void testBind_RefusesToReplaceFile(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("notes.txt");
+    Files.writeString(file, "not a socket");
+    try {
+      SolverDaemon.bind(file).close();
+      fail("No exception when a regular file is in the way");
+    } catch (IOException expected) {
+      assertTrue(expected.getMessage().contains("not a socket"));
+    }
+    assertEquals("not a socket", Files.readString(file));
+  }
+}
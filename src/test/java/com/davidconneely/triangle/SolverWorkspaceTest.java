@@ -0,0 +1,89 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public final class SolverWorkspaceTest {
+
+  @Test
+  public void testFindMinPath_CompareFindMinPath() {
+    // the triangles get bigger and smaller, so the buffers are sometimes bigger than needed,
+    // and each path is written over a longer one
+    SolverWorkspace workspace = new SolverWorkspace();
+    int[] path = new int[60];
+    for (int ntry = 0; ntry < 100; ++ntry) {
+      int numRows = (ntry * 37) % 60;
+      // values so big that the running totals are sometimes longs
+      int maxValue = ntry % 3 == 0 ? Integer.MAX_VALUE : 4;
+      Triangle t = TriangleTestUtils.makeRandomTriangle(numRows, 0, maxValue);
+      int[] expected = TrianglePathFinder.findMinPath(t);
+      long total = workspace.findMinPath(t, path);
+      for (int rowNo = 0; rowNo < numRows; ++rowNo) {
+        assertEquals(expected[rowNo], path[rowNo]);
+        total -= expected[rowNo];
+      }
+      assertEquals(0, total);
+      assertArrayEquals(expected, workspace.findMinPath(t));
+      assertEquals(TrianglePathFinder.findMinCost(t), workspace.findMinCost(t));
+    }
+  }
+
+  @Test
+  public void testFindMinPath_PathTooShort() {
+    Triangle t = TriangleTestUtils.makeRandomTriangle(5, 0, 9);
+    assertThrows(
+        IllegalArgumentException.class, () -> new SolverWorkspace().findMinPath(t, new int[4]));
+  }
+
+  @Test
+  public void testFindMinPath_AllocatesNothing() {
+    // with the default kernel (the vector kernel, if its module is present), and with both int
+    // and long running totals
+    assertAllocatesNothing(TriangleTestUtils.makeRandomTriangle(300, 0, 99));
+    assertAllocatesNothing(TriangleTestUtils.makeRandomTriangle(300, 0, Integer.MAX_VALUE));
+  }
+
+  /**
+   * Warm up the public method until its kernel has been compiled (before which the vector kernel
+   * allocates), then check that a whole round of calls allocates nothing. The JIT compiler can
+   * still allocate now and then on this thread, so a few rounds are tried.
+   */
+  private static void assertAllocatesNothing(Triangle t) {
+    com.sun.management.ThreadMXBean bean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    SolverWorkspace workspace = new SolverWorkspace();
+    int[] path = new int[t.size()];
+    for (int i = 0; i < 2000; ++i) {
+      workspace.findMinPath(t, path);
+    }
+    List<Long> allocated = new ArrayList<>();
+    for (int round = 0; round < 10 && !allocated.contains(0L); ++round) {
+      long before = bean.getCurrentThreadAllocatedBytes();
+      for (int i = 0; i < 100; ++i) {
+        workspace.findMinPath(t, path);
+      }
+      allocated.add(bean.getCurrentThreadAllocatedBytes() - before);
+    }
+    assertTrue(allocated.contains(0L), TrianglePathFinder.KERNEL + " allocated " + allocated);
+  }
+
+  @Test
+  public void testTrim() {
+    SolverWorkspace workspace = new SolverWorkspace();
+    Triangle t = TriangleTestUtils.makeRandomTriangle(2000, 0, 9);
+    int[] expected = workspace.findMinPath(t);
+    long retained = workspace.retainedBytes();
+    // at least the direction bits, an eighth of a byte per value above the base
+    assertTrue(retained >= Triangle.rowOffset(1999) / 8, "retained " + retained);
+    workspace.trim(retained);
+    assertEquals(retained, workspace.retainedBytes());
+    workspace.trim(retained - 1);
+    assertEquals(0, workspace.retainedBytes());
+    assertArrayEquals(expected, workspace.findMinPath(t));
+    assertEquals(retained, workspace.retainedBytes());
+  }
+}
@@ -0,0 +1,88 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public final class StreamingPathFinderTest {
+
+  @Test
+  public void testMinPathColumns_ProvidedExample() {
+    StreamingPathFinder finder = new StreamingPathFinder();
+    finder.addRow(new int[] {7}, 1);
+    finder.addRow(new int[] {6, 3}, 2);
+    finder.addRow(new int[] {3, 8, 5}, 3);
+    finder.addRow(new int[] {11, 2, 10, 9}, 4);
+    assertArrayEquals(new int[] {0, 0, 0, 1}, finder.minPathColumns());
+  }
+
+  @Test
+  public void testMinPathColumns_EmptyTriangle() {
+    StreamingPathFinder finder = new StreamingPathFinder();
+    assertArrayEquals(new int[0], finder.minPathColumns());
+  }
+
+  @Test
+  public void testMinPathColumns_NonuniqueMinPaths() {
+    // same as TrianglePathFinderTest, should keep left at each decision point
+    StreamingPathFinder finder = new StreamingPathFinder();
+    finder.addRow(new int[] {1}, 1);
+    finder.addRow(new int[] {2, 3}, 2);
+    finder.addRow(new int[] {3, 4, 2}, 3);
+    assertArrayEquals(new int[] {0, 0, 0}, finder.minPathColumns());
+  }
+
+  @Test
+  public void testAddRow_TooLong() {
+    StreamingPathFinder finder = new StreamingPathFinder();
+    finder.addRow(new int[] {7}, 1);
+    try {
+      finder.addRow(new int[] {3, 8, 5}, 3);
+      fail("No exception when row is too long");
+    } catch (TriangleShapeException tse) {
+      assertTrue(tse.getLineNo() == 2 && tse.getNumValues() == 3);
+    }
+  }
+
+  @Test
+  public void testAddRow_IntOverflow() {
+    // the running totals are longs, so they do not overflow
+    StreamingPathFinder finder = new StreamingPathFinder();
+    finder.addRow(new int[] {11}, 1);
+    finder.addRow(new int[] {Integer.MAX_VALUE - 9, Integer.MAX_VALUE - 10}, 2);
+    assertEquals(Integer.MAX_VALUE + 1L, finder.minCost());
+    assertArrayEquals(new int[] {0, 1}, finder.minPathColumns());
+  }
+
+  @Test
+  public void testMinPathColumns_CompareFindMinPath() {
+    // small values make for lots of equally-minimal paths, which
+    // checks that both algorithms choose between them in the same way
+    for (int ntry = 0; ntry < 200; ++ntry) {
+      Triangle t = TriangleTestUtils.makeRandomTriangle(ntry % 40 + 1, 0, ntry % 4);
+      StreamingPathFinder finder = new StreamingPathFinder();
+      for (int rowNo = 0; rowNo < t.size(); ++rowNo) {
+        finder.addRow(t.getRow(rowNo), rowNo + 1);
+      }
+      assertArrayEquals(TriangleTestUtils.findMinPathColumns(t), finder.minPathColumns());
+    }
+  }
+
+  @Test
+  public void testFindMinPath_File(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.txt");
+    Files.writeString(file, "7\n6 3\n3 8 5\n11 2 10 9\n");
+    assertArrayEquals(new int[] {7, 6, 3, 2}, StreamingPathFinder.findMinPath(file));
+  }
+
+  @Test
+  public void testFindMinPathSpilled_File(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.txt");
+    Files.writeString(file, "7\n6 3\n3 8 5\n11 2 10 9\n");
+    assertArrayEquals(new int[] {7, 6, 3, 2}, StreamingPathFinder.findMinPathSpilled(file));
+  }
+}
@@ -0,0 +1,168 @@
+package com.davidconneely.triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public final class TriangleFileTest {
+
+  @Test
+  public void testConvert_SimpleExample(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.bin");
+    TriangleReader tr = new TriangleReader(new StringReader("7\n6 3\n3 8 5\n11 2 10 9"));
+    assertEquals(4, TriangleFile.convert(tr, file));
+    assertEquals(TriangleFile.HEADER_SIZE + 10L * Integer.BYTES, Files.size(file));
+    assertTrue(TriangleFile.isBinary(file));
+    try (Triangle t = TriangleFile.open(file)) {
+      assertEquals(4, t.size());
+      assertArrayEquals(new int[] {3, 8, 5}, t.getRow(2));
+      assertArrayEquals(new int[] {7, 6, 3, 2}, TrianglePathFinder.findMinPath(t));
+      assertEquals(2, t.minValue());
+      assertEquals(11, t.maxValue());
+    }
+  }
+
+  @Test
+  public void testConvert_LargeExample(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.bin");
+    Triangle t1;
+    try (InputStream is = getClass().getResourceAsStream("/goodfile2")) {
+      t1 = new TriangleReader(is).readTriangle();
+    }
+    try (InputStream is = getClass().getResourceAsStream("/goodfile2")) {
+      assertEquals(500, TriangleFile.convert(new TriangleReader(is), file));
+    }
+    try (Triangle t2 = TriangleFile.open(file)) {
+      assertEquals(t1.size(), t2.size());
+      for (int rowNo = 0; rowNo < t1.size(); ++rowNo) {
+        assertArrayEquals(t1.getRow(rowNo), t2.getRow(rowNo));
+      }
+    }
+  }
+
+  @Test
+  public void testWrite_EmptyTriangle(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.bin");
+    TriangleFile.write(new Triangle(), file);
+    try (Triangle t = TriangleFile.open(file)) {
+      assertEquals(0, t.size());
+      assertArrayEquals(new int[0], TrianglePathFinder.findMinPath(t));
+    }
+  }
+
+  @Test
+  public void testOpen_TextFile(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.txt");
+    Files.writeString(file, "7\n6 3\n");
+    assertFalse(TriangleFile.isBinary(file));
+    assertThrows(IOException.class, () -> TriangleFile.open(file));
+  }
+
+  @Test
+  public void testOpen_ChecksumMismatch(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.bin");
+    Triangle t = TriangleTestUtils.makeRandomTriangle(20, 0, 99);
+    TriangleFile.write(t, file);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      // overwrite the first byte of the last value
+      channel.write(ByteBuffer.wrap(new byte[] {-1}), Files.size(file) - 4);
+    }
+    // the values are only read when they are verified
+    try (Triangle t2 = TriangleFile.open(file)) {
+      assertEquals(20, t2.size());
+    }
+    IOException ioe = assertThrows(IOException.class, () -> TriangleFile.open(file, true));
+    assertTrue(ioe.getMessage().startsWith("Checksum mismatch"));
+  }
+
+  @Test
+  public void testOpen_RangeMismatch(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.bin");
+    TriangleFile.write(TriangleTestUtils.makeRandomTriangle(20, 0, 99), file);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      // lower the highest value in the header
+      channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 50), 32);
+    }
+    try (Triangle t = TriangleFile.open(file)) {
+      assertEquals(50, t.maxValue());
+    }
+    IOException ioe = assertThrows(IOException.class, () -> TriangleFile.open(file, true));
+    assertTrue(ioe.getMessage().startsWith("Range mismatch"));
+  }
+
+  @Test
+  public void testOpen_Version1(@TempDir Path dir) throws IOException {
+    // 7 / 6 3 with a version 1 header, which has no range of values
+    ByteBuffer buffer = ByteBuffer.allocate(32 + 3 * 4).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.put("TRIANGLE".getBytes(StandardCharsets.US_ASCII)).putInt(1).putInt(4).putLong(2);
+    CRC32C crc = new CRC32C();
+    crc.update(
+        ByteBuffer.allocate(12)
+            .order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(7)
+            .putInt(6)
+            .putInt(3)
+            .flip());
+    buffer.putInt((int) crc.getValue()).putInt(0).putInt(7).putInt(6).putInt(3);
+    Path file = dir.resolve("triangle.bin");
+    Files.write(file, buffer.array());
+    assertTrue(TriangleFile.isBinary(file));
+    try (Triangle t = TriangleFile.open(file)) {
+      assertArrayEquals(new int[] {7, 3}, TrianglePathFinder.findMinPath(t));
+      assertEquals(Integer.MIN_VALUE, t.minValue());
+    }
+    try (Triangle t = TriangleFile.open(file, true)) {
+      assertEquals(3, t.minValue());
+      assertEquals(7, t.maxValue());
+    }
+  }
+
+  @Test
+  public void testConvert_InvalidInput(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.bin");
+    TriangleReader tr = new TriangleReader(new StringReader("7\n6 3\n3 8\n"));
+    try {
+      TriangleFile.convert(tr, file);
+      fail("No exception when row is too short");
+    } catch (TriangleShapeException tse) {
+      assertTrue(tse.getLineNo() == 3 && tse.getNumValues() == 2);
+    }
+    // nothing is written unless the whole triangle has been converted
+    assertFalse(Files.exists(file));
+    try (Stream<Path> files = Files.list(dir)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  public void testConvert_InvalidInputKeepsExistingFile(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.bin");
+    TriangleFile.convert(new TriangleReader(new StringReader("7\n6 3\n")), file);
+    TriangleReader tr = new TriangleReader(new StringReader("1\n2 x\n"));
+    assertThrows(TriangleValueException.class, () -> TriangleFile.convert(tr, file));
+    try (Triangle t = TriangleFile.open(file, true)) {
+      assertArrayEquals(new int[] {6, 3}, t.getRow(1));
+    }
+    // and a successful conversion replaces it
+    TriangleFile.convert(new TriangleReader(new StringReader("5\n")), file);
+    try (Triangle t = TriangleFile.open(file, true)) {
+      assertEquals(1, t.size());
+    }
+    try (Stream<Path> files = Files.list(dir)) {
+      assertEquals(1, files.count());
+    }
+  }
+}
@@ -2,9 +2,25 @@ package com.davidconneely.triangle;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.jupiter.api.Test;
 
 public final class TrianglePathFinderTest {
+  private static final RowKernel[] KERNELS = {RowKernel.SCALAR, new VectorRowKernel()};
+
+  /** Find the path with each row kernel, check they agree, and return it. */
+  private static int[] findMinPathAllKernels(Triangle t) {
+    int[] path = TrianglePathFinder.findMinPath(t);
+    for (RowKernel kernel : KERNELS) {
+      int[] path2 =
+          TrianglePathFinder.findMinPath(
+              t, null, TrianglePathFinder.PARALLEL_MIN_WIDTH, Integer.MAX_VALUE, kernel);
+      assertArrayEquals(path, path2);
+    }
+    return path;
+  }
 
   @Test
   public void testFindMinPath_ProvidedExample() {
@@ -71,19 +87,16 @@ public final class TrianglePathFinderTest {
 
   @Test
   public void testFindMinPath_IntOverflow() {
+    // the totals no longer fit in an int, so they are kept as longs
     Triangle tOK = new Triangle();
     tOK.addRow(new int[] {10});
     tOK.addRow(new int[] {Integer.MAX_VALUE - 10, Integer.MAX_VALUE - 10});
-    TrianglePathFinder.findMinPath(tOK);
-    try {
-      Triangle tOF = new Triangle();
-      tOF.addRow(new int[] {11});
-      tOF.addRow(new int[] {Integer.MAX_VALUE - 10, Integer.MAX_VALUE - 10});
-      TrianglePathFinder.findMinPath(tOF);
-      fail("No exception on overflow");
-    } catch (ArithmeticException ae) {
-      /* expected */
-    }
+    assertEquals(Integer.MAX_VALUE, TrianglePathFinder.findMinCost(tOK));
+    Triangle tOF = new Triangle();
+    tOF.addRow(new int[] {11});
+    tOF.addRow(new int[] {Integer.MAX_VALUE - 10, Integer.MAX_VALUE - 9});
+    assertArrayEquals(new int[] {11, Integer.MAX_VALUE - 10}, findMinPathAllKernels(tOF));
+    assertEquals(Integer.MAX_VALUE + 1L, TrianglePathFinder.findMinCost(tOF));
   }
 
   @Test
@@ -91,18 +104,41 @@ public final class TrianglePathFinderTest {
     Triangle tOK = new Triangle();
     tOK.addRow(new int[] {-10});
     tOK.addRow(new int[] {Integer.MIN_VALUE + 10, Integer.MIN_VALUE + 10});
-    TrianglePathFinder.findMinPath(tOK);
-    try {
-      Triangle tUF = new Triangle();
-      tUF.addRow(new int[] {-11});
-      tUF.addRow(new int[] {Integer.MIN_VALUE + 10, Integer.MIN_VALUE + 10});
-      TrianglePathFinder.findMinPath(tUF);
-      fail("No exception on underflow");
-    } catch (ArithmeticException ae) {
-      /* expected */
+    assertEquals(Integer.MIN_VALUE, TrianglePathFinder.findMinCost(tOK));
+    Triangle tUF = new Triangle();
+    tUF.addRow(new int[] {-11});
+    tUF.addRow(new int[] {Integer.MIN_VALUE + 11, Integer.MIN_VALUE + 10});
+    assertArrayEquals(new int[] {-11, Integer.MIN_VALUE + 10}, findMinPathAllKernels(tUF));
+    assertEquals(Integer.MIN_VALUE - 1L, TrianglePathFinder.findMinCost(tUF));
+  }
+
+  @Test
+  public void testFindMinCost_ExtremeValues() {
+    // the largest totals possible for the number of rows
+    for (int value : new int[] {Integer.MIN_VALUE, Integer.MAX_VALUE}) {
+      Triangle t = TriangleTestUtils.makeRandomTriangle(100, value, value);
+      for (RowKernel kernel : KERNELS) {
+        assertEquals(100L * value, TrianglePathFinder.findMinCost(t, kernel));
+      }
     }
   }
 
+  @Test
+  public void testIntTotalsCannotOverflow() {
+    assertTrue(TrianglePathFinder.intTotalsCannotOverflow(1, Integer.MIN_VALUE, Integer.MAX_VALUE));
+    assertFalse(
+        TrianglePathFinder.intTotalsCannotOverflow(2, Integer.MIN_VALUE, Integer.MAX_VALUE));
+    assertTrue(TrianglePathFinder.intTotalsCannotOverflow(1 << 24, -128, 127));
+    assertFalse(TrianglePathFinder.intTotalsCannotOverflow(1 << 24, -129, 127));
+    assertFalse(TrianglePathFinder.intTotalsCannotOverflow(1 << 24, -128, 128));
+    // all positive or all negative values only bound the totals on one side
+    assertTrue(
+        TrianglePathFinder.intTotalsCannotOverflow(
+            2, Integer.MAX_VALUE / 2, Integer.MAX_VALUE / 2));
+    assertTrue(TrianglePathFinder.intTotalsCannotOverflow(2, Integer.MIN_VALUE / 2, -1));
+    assertFalse(TrianglePathFinder.intTotalsCannotOverflow(3, Integer.MIN_VALUE / 2, -1));
+  }
+
   @Test
   public void testFindMinPath_Timings() {
     // try it 20 times and check it always takes < 500ms
@@ -121,9 +157,94 @@ public final class TrianglePathFinderTest {
     // triangles to check the two algorithms find the same paths
     for (int ntry = 0; ntry < 22; ++ntry) {
       Triangle t = TriangleTestUtils.makeRandomTriangle(ntry + 1, 0, 99);
-      int[] path1 = TrianglePathFinder.findMinPath(t);
+      int[] path1 = findMinPathAllKernels(t);
       int[] path2 = TriangleTestUtils.findMinPathAltImpl(t);
       assertArrayEquals(path1, path2);
     }
   }
+
+  @Test
+  public void testFindMinCost_ProvidedExample() throws IOException {
+    Triangle t = new Triangle();
+    t.addRow(new int[] {7});
+    t.addRow(new int[] {6, 3});
+    t.addRow(new int[] {3, 8, 5});
+    t.addRow(new int[] {11, 2, 10, 9});
+    assertEquals(18, TrianglePathFinder.findMinCost(t));
+    TriangleReader tr = new TriangleReader(new StringReader("7\n6 3\n3 8 5\n11 2 10 9"));
+    assertEquals(18, TrianglePathFinder.findMinCost(tr));
+  }
+
+  @Test
+  public void testFindMinCost_EmptyTriangle() throws IOException {
+    assertEquals(0, TrianglePathFinder.findMinCost(new Triangle()));
+    assertEquals(0, TrianglePathFinder.findMinCost(new TriangleReader(new StringReader(""))));
+  }
+
+  @Test
+  public void testFindMinCost_CompareFindMinPath() throws IOException {
+    for (int ntry = 0; ntry < 50; ++ntry) {
+      Triangle t = TriangleTestUtils.makeRandomTriangle(ntry + 1, -50, 99);
+      long total = TriangleTestUtils.getPathLen(TrianglePathFinder.findMinPath(t));
+      assertEquals(total, TrianglePathFinder.findMinCost(t));
+      for (RowKernel kernel : KERNELS) {
+        assertEquals(total, TrianglePathFinder.findMinCost(t, kernel));
+      }
+      TriangleReader tr = new TriangleReader(new StringReader(t.toString()));
+      assertEquals(total, TrianglePathFinder.findMinCost(tr));
+    }
+  }
+
+  @Test
+  public void testFindMinPath_Parallel() {
+    // split every row with more than one word of direction bits, on
+    // triangles with lots of ties, to check the same path is found
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (int ntry = 0; ntry < 20; ++ntry) {
+        Triangle t = TriangleTestUtils.makeRandomTriangle(100 + 37 * ntry, 0, ntry % 4);
+        int[] path1 = TrianglePathFinder.findMinPath(t);
+        for (RowKernel kernel : KERNELS) {
+          int[] path2 = TrianglePathFinder.findMinPath(t, pool, 2, 64, kernel);
+          assertArrayEquals(path1, path2);
+        }
+        assertArrayEquals(path1, TrianglePathFinder.findMinPath(t, pool));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testFindMinPath_ParallelLongTotals() {
+    Triangle t =
+        TriangleTestUtils.makeRandomTriangle(200, Integer.MAX_VALUE - 99, Integer.MAX_VALUE);
+    int[] path1 = TrianglePathFinder.findMinPath(t);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (RowKernel kernel : KERNELS) {
+        assertArrayEquals(path1, TrianglePathFinder.findMinPath(t, pool, 2, 64, kernel));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testFindMinPath_CompareKernels() {
+    // wide enough rows for whole vectors, with lots of ties, and values
+    // big enough that the running totals have to be kept as longs
+    for (int ntry = 0; ntry < 40; ++ntry) {
+      Triangle t = TriangleTestUtils.makeRandomTriangle(ntry * 7 + 1, 0, ntry % 3);
+      findMinPathAllKernels(t);
+    }
+    for (int ntry = 0; ntry < 40; ++ntry) {
+      int bound = 1 << 26;
+      Triangle t = TriangleTestUtils.makeRandomTriangle(ntry + 40, -bound, bound);
+      int[] path = findMinPathAllKernels(t);
+      for (RowKernel kernel : KERNELS) {
+        assertEquals(TriangleTestUtils.getPathLen(path), TrianglePathFinder.findMinCost(t, kernel));
+      }
+    }
+  }
 }
@@ -2,9 +2,11 @@ package com.davidconneely.triangle;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.Test;
 
 public final class TriangleReaderTest {
@@ -88,4 +90,94 @@ public final class TriangleReaderTest {
     Triangle t = tr.readTriangle();
     assertEquals(4, t.size());
   }
+
+  @Test
+  public void testReadTriangle_LineEndings() throws IOException {
+    Reader rdr = new StringReader("7\r\n6 3\r3 8 5\n\r\n11 2 10 9\r");
+    TriangleReader tr = new TriangleReader(rdr);
+    try {
+      Triangle t = tr.readTriangle();
+      fail("No exception when row is empty: " + t.toString());
+    } catch (TriangleShapeException tse) {
+      // the LF after the CR on line 2 is not a blank line, but the CR LF on line 4 is
+      assertTrue(tse.getLineNo() == 4 && tse.getNumValues() == 0);
+    }
+    rdr = new StringReader("7\r\n6 3\r3 8 5\n11 2 10 9\r");
+    assertEquals(4, new TriangleReader(rdr).readTriangle().size());
+  }
+
+  @Test
+  public void testReadTriangle_Signs() throws IOException {
+    Reader rdr = new StringReader("+7\n-6 0003\n-2147483648 2147483647 -0");
+    Triangle t = new TriangleReader(rdr).readTriangle();
+    assertEquals(7, t.get(0, 0));
+    assertArrayEquals(new int[] {-6, 3}, t.getRow(1));
+    assertArrayEquals(new int[] {Integer.MIN_VALUE, Integer.MAX_VALUE, 0}, t.getRow(2));
+  }
+
+  @Test
+  public void testReadTriangle_OutOfRangeValue() throws IOException {
+    Reader rdr = new StringReader("7\n6 2147483648");
+    TriangleReader tr = new TriangleReader(rdr);
+    try {
+      Triangle t = tr.readTriangle();
+      fail("No exception when value is out of range: " + t.toString());
+    } catch (TriangleValueException tve) {
+      assertTrue(
+          tve.getLineNo() == 2 && tve.getValueNo() == 2 && "2147483648".equals(tve.getValueText()));
+    }
+  }
+
+  @Test
+  public void testReadTriangle_InvalidSigns() throws IOException {
+    for (String value : new String[] {"-", "+", "+-5", "5-", "--5"}) {
+      TriangleReader tr = new TriangleReader(new StringReader("7\n6 " + value));
+      try {
+        Triangle t = tr.readTriangle();
+        fail("No exception when value is " + value + ": " + t.toString());
+      } catch (TriangleValueException tve) {
+        assertEquals(value, tve.getValueText());
+      }
+    }
+  }
+
+  @Test
+  public void testReadTriangle_NonAsciiValues() throws IOException {
+    // Integer.parseInt accepts digits from other scripts, so still allow them
+    Reader rdr = new StringReader("7\n\u0666 \u0663\n3 8 5\u00e9");
+    TriangleReader tr = new TriangleReader(rdr);
+    try {
+      Triangle t = tr.readTriangle();
+      fail("No exception when non-numeric value: " + t.toString());
+    } catch (TriangleValueException tve) {
+      assertTrue(
+          tve.getLineNo() == 3 && tve.getValueNo() == 3 && "5\u00e9".equals(tve.getValueText()));
+    }
+    rdr = new StringReader("7\n\u0666 \u0663");
+    assertArrayEquals(new int[] {6, 3}, new TriangleReader(rdr).readTriangle().getRow(1));
+  }
+
+  @Test
+  public void testReadTriangle_ValueCheckedBeforeShape() throws IOException {
+    Reader rdr = new StringReader("7\n6 3 8 splat");
+    TriangleReader tr = new TriangleReader(rdr);
+    try {
+      Triangle t = tr.readTriangle();
+      fail("No exception when non-numeric value: " + t.toString());
+    } catch (TriangleValueException tve) {
+      assertTrue(tve.getLineNo() == 2 && tve.getValueNo() == 4);
+    }
+  }
+
+  @Test
+  public void testReadTriangle_LongInput() throws IOException {
+    // much bigger than the buffer, so values straddle refills
+    Triangle t1 = TriangleTestUtils.makeRandomTriangle(600, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    byte[] text = t1.toString().getBytes(StandardCharsets.US_ASCII);
+    Triangle t2 = new TriangleReader(new ByteArrayInputStream(text)).readTriangle();
+    assertEquals(t1.size(), t2.size());
+    for (int rowNo = 0; rowNo < t1.size(); ++rowNo) {
+      assertArrayEquals(t1.getRow(rowNo), t2.getRow(rowNo));
+    }
+  }
 }
@@ -2,8 +2,17 @@ package com.davidconneely.triangle;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-import java.util.ListIterator;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public final class TriangleTest {
 
@@ -67,29 +76,68 @@ public final class TriangleTest {
   }
 
   @Test
-  public void testFirstRowIterator() {
+  public void testGet() {
     Triangle t = new Triangle();
     t.addRow(new int[] {7});
     t.addRow(new int[] {6, 3});
     t.addRow(new int[] {3, 8, 5});
     t.addRow(new int[] {11, 2, 10, 9});
-    ListIterator<int[]> it = t.firstRowIterator();
-    assertEquals(1, it.next().length);
-    assertEquals(2, it.next().length);
-    assertEquals(3, it.next().length);
+    assertEquals(7, t.get(0, 0));
+    assertEquals(3, t.get(1, 1));
+    assertEquals(8, t.get(2, 1));
+    assertEquals(9, t.get(3, 3));
+    assertThrows(IndexOutOfBoundsException.class, () -> t.get(1, 2));
+    assertThrows(IndexOutOfBoundsException.class, () -> t.get(4, 0));
   }
 
   @Test
-  public void testLastRowIterator() {
+  public void testGetRow() {
     Triangle t = new Triangle();
     t.addRow(new int[] {7});
     t.addRow(new int[] {6, 3});
     t.addRow(new int[] {3, 8, 5});
     t.addRow(new int[] {11, 2, 10, 9});
-    ListIterator<int[]> it = t.lastRowIterator();
-    assertEquals(4, it.previous().length);
-    assertEquals(3, it.previous().length);
-    assertEquals(2, it.previous().length);
+    assertArrayEquals(new int[] {7}, t.getRow(0));
+    assertArrayEquals(new int[] {3, 8, 5}, t.getRow(2));
+    int[] buffer = new int[] {-1, -1, -1, -1, -1, -1};
+    t.copyRow(3, buffer);
+    assertArrayEquals(new int[] {11, 2, 10, 9, -1, -1}, buffer);
+  }
+
+  @Test
+  public void testAddRow_CopiesValues() {
+    Triangle t = new Triangle();
+    int[] row = new int[] {7};
+    t.addRow(row);
+    row[0]++;
+    assertEquals(7, t.get(0, 0));
+  }
+
+  @Test
+  public void testAddRow_StraddlesChunks() {
+    // 4-value chunks, so most rows are split across two or more chunks
+    Triangle t = new Triangle(2);
+    for (int rowNo = 0; rowNo < 20; ++rowNo) {
+      int[] row = new int[rowNo + 1];
+      for (int colNo = 0; colNo <= rowNo; ++colNo) {
+        row[colNo] = rowNo * 100 + colNo;
+      }
+      t.addRow(row);
+    }
+    assertEquals(20, t.size());
+    assertEquals(210L, t.cellCount());
+    for (int rowNo = 0; rowNo < 20; ++rowNo) {
+      int[] row = t.getRow(rowNo);
+      for (int colNo = 0; colNo <= rowNo; ++colNo) {
+        assertEquals(rowNo * 100 + colNo, row[colNo]);
+        assertEquals(rowNo * 100 + colNo, t.get(rowNo, colNo));
+      }
+    }
+    Triangle t2 = t.clone();
+    t2.setRow(19, new int[20]);
+    assertEquals(1919, t.get(19, 19));
+    assertEquals(0, t2.get(19, 19));
+    assertEquals(1818, t2.get(18, 18));
   }
 
   @Test
@@ -101,17 +149,202 @@ public final class TriangleTest {
     t1.addRow(new int[] {11, 2, 10, 9});
     Triangle t2 = t1.clone();
     assertEquals(t2.size(), t1.size());
-    ListIterator<int[]> it1 = t1.firstRowIterator();
-    ListIterator<int[]> it2 = t2.firstRowIterator();
-    while (it1.hasNext()) {
-      int[] row1 = it1.next();
-      int[] row2 = it2.next();
+    for (int rowNo = 0; rowNo < t1.size(); ++rowNo) {
       // check the rows have the same values
-      assertArrayEquals(row1, row2);
-      // check the rows are separate array instances
-      row1[0]++;
-      assertTrue(row1[0] != row2[0]);
+      assertArrayEquals(t1.getRow(rowNo), t2.getRow(rowNo));
+      // check the rows are separate storage
+      t1.set(rowNo, 0, t1.get(rowNo, 0) + 1);
+      assertTrue(t1.get(rowNo, 0) != t2.get(rowNo, 0));
+    }
+  }
+
+  @Test
+  public void testCreateMapped(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.cells");
+    try (Triangle t = Triangle.createMapped(file)) {
+      t.addRow(new int[] {7});
+      t.addRow(new int[] {6, 3});
+      t.addRow(new int[] {3, 8, 5});
+      t.addRow(new int[] {11, 2, 10, 9});
+      assertEquals(4, t.size());
+      assertEquals(8, t.get(2, 1));
+      assertArrayEquals(new int[] {7, 6, 3, 2}, TrianglePathFinder.findMinPath(t));
+    }
+    // closing truncates the file to just the values
+    assertEquals(10L * Integer.BYTES, Files.size(file));
+    try (Triangle t = Triangle.openMapped(file)) {
+      assertEquals(4, t.size());
+      assertArrayEquals(new int[] {11, 2, 10, 9}, t.getRow(3));
+      try (Triangle t2 = t.clone()) {
+        t2.set(3, 0, 0);
+        assertEquals(11, t.get(3, 0));
+        assertEquals(0, t2.get(3, 0));
+      }
+    }
+    try (Stream<Path> files = Files.list(dir)) {
+      // the clone's temporary file has been deleted
+      assertEquals(1L, files.count());
+    }
+  }
+
+  @Test
+  public void testOpenMapped_IncompleteRow(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.cells");
+    Files.write(file, new byte[4 * Integer.BYTES]);
+    try {
+      Triangle t = Triangle.openMapped(file);
+      fail("No exception when last row is incomplete: " + t.toString());
+    } catch (TriangleShapeException tse) {
+      assertTrue(tse.getLineNo() == 3 && tse.getNumValues() == 1);
+    }
+  }
+
+  @Test
+  public void testRowsForCells() {
+    for (int rowNo = 0; rowNo < 100_000; rowNo += 7) {
+      long numCells = Triangle.rowOffset(rowNo);
+      assertEquals(rowNo, Triangle.rowsForCells(numCells));
+      assertEquals(rowNo, Triangle.rowsForCells(numCells + rowNo));
+    }
+    assertEquals(65536, Triangle.rowsForCells(Triangle.rowOffset(65536)));
+  }
+
+  @Test
+  public void testValueRange() {
+    Triangle t = new Triangle();
+    t.addRow(new int[] {7});
+    assertEquals(7, t.minValue());
+    assertEquals(7, t.maxValue());
+    t.addRow(new int[] {-6, 3});
+    t.addZeroRows(1);
+    t.setRow(2, new int[] {3, 80, 5});
+    assertEquals(-6, t.minValue());
+    assertEquals(80, t.maxValue());
+    t.set(1, 0, 1);
+    // the range is only ever widened
+    assertEquals(-6, t.minValue());
+    t.set(1, 0, -100);
+    assertEquals(-100, t.minValue());
+    Triangle copy = t.clone();
+    assertEquals(-100, copy.minValue());
+    assertEquals(80, copy.maxValue());
+  }
+
+  @Test
+  public void testAddRow_WidensStorage() {
+    // 4-value chunks, so widening has to copy several chunks
+    Triangle t = new Triangle(2);
+    t.addRow(new int[] {7});
+    t.addRow(new int[] {-128, 127});
+    assertEquals(Byte.BYTES, t.valueWidth());
+    t.addRow(new int[] {3, 8, 5});
+    t.addRow(new int[] {11, -129, 10, 9});
+    assertEquals(Short.BYTES, t.valueWidth());
+    t.addZeroRows(1);
+    t.set(4, 4, 40_000);
+    assertEquals(Integer.BYTES, t.valueWidth());
+    assertArrayEquals(new int[] {-128, 127}, t.getRow(1));
+    assertArrayEquals(new int[] {11, -129, 10, 9}, t.getRow(3));
+    assertArrayEquals(new int[] {0, 0, 0, 0, 40_000}, t.getRow(4));
+    assertEquals(Integer.BYTES, t.clone().valueWidth());
+  }
+
+  @Test
+  public void testReserveValueRange() {
+    Triangle t = new Triangle();
+    t.reserveValueRange(-999, 999);
+    assertEquals(Short.BYTES, t.valueWidth());
+    // the range of the values themselves is not changed
+    assertEquals(Integer.MAX_VALUE, t.minValue());
+    t.addRow(new int[] {5});
+    assertEquals(Short.BYTES, t.valueWidth());
+    assertEquals(5, t.maxValue());
+  }
+
+  @Test
+  public void testFreeze() {
+    Triangle t = new Triangle();
+    t.addRow(new int[] {7});
+    t.addRow(new int[] {6, 3});
+    FrozenTriangle frozen = t.freeze();
+    assertEquals(2, frozen.size());
+    assertEquals(3, frozen.cellCount());
+    assertArrayEquals(new int[] {6, 3}, frozen.getRow(1));
+    assertEquals(3, frozen.minValue());
+    assertEquals(7, frozen.maxValue());
+    assertEquals("7 \n6 3 \n", frozen.toString());
+    assertThrows(IndexOutOfBoundsException.class, () -> frozen.get(2, 0));
+    assertThrows(IndexOutOfBoundsException.class, () -> frozen.get(1, 2));
+    // the original no longer has any rows
+    assertEquals(0, t.size());
+    assertEquals(0, t.cellCount());
+    assertEquals(Integer.MAX_VALUE, t.minValue());
+    // a copy can be changed
+    Triangle copy = frozen.copy();
+    copy.set(1, 1, 4);
+    assertEquals(4, copy.get(1, 1));
+    assertEquals(3, frozen.get(1, 1));
+  }
+
+  @Test
+  public void testFreeze_ReuseOriginal() throws IOException {
+    Triangle t = new Triangle();
+    t.addRow(new int[] {7});
+    FrozenTriangle frozen = t.freeze();
+    // the original can be filled again, without changing the frozen triangle
+    assertThrows(IndexOutOfBoundsException.class, () -> t.get(0, 0));
+    t.addRow(new int[] {1000});
+    t.addRow(new int[] {2, 3});
+    t.set(0, 0, 4);
+    assertEquals(4, t.get(0, 0));
+    assertEquals(1000, t.maxValue());
+    assertEquals(2, t.valueWidth());
+    assertEquals("4 \n2 3 \n", t.toString());
+    assertEquals(t.toString(), t.clone().toString());
+    assertEquals(1, frozen.size());
+    assertEquals(7, frozen.get(0, 0));
+    assertEquals(7, frozen.maxValue());
+    assertEquals(1, frozen.valueWidth());
+    // and freezing it again makes another frozen triangle
+    FrozenTriangle refrozen = t.freeze();
+    assertEquals(2, refrozen.size());
+    assertEquals(1, frozen.size());
+    // but a closed triangle cannot be frozen
+    t.close();
+    assertThrows(IllegalStateException.class, t::freeze);
+  }
+
+  @Test
+  public void testFreeze_Mapped(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("triangle.bin");
+    Triangle t = Triangle.createMapped(file);
+    t.addRow(new int[] {7});
+    t.addRow(new int[] {6, 3});
+    FrozenTriangle frozen = t.freeze();
+    // closing the original does not unmap the values, which the frozen triangle now owns
+    t.close();
+    assertArrayEquals(new int[] {6, 3}, frozen.getRow(1));
+    frozen.close();
+    // closing it again does nothing
+    frozen.close();
+    assertEquals(3 * Integer.BYTES, Files.size(file));
+  }
+
+  @Test
+  public void testFreeze_ConcurrentReaders() throws Exception {
+    FrozenTriangle frozen = TriangleTestUtils.makeRandomTriangle(400, -50, 50).freeze();
+    int[] expected = TrianglePathFinder.findMinPath(frozen);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<int[]>> futures = new ArrayList<>();
+      for (int i = 0; i < 32; ++i) {
+        futures.add(executor.submit(() -> TrianglePathFinder.findMinPath(frozen)));
+      }
+      for (Future<int[]> future : futures) {
+        assertArrayEquals(expected, future.get());
+      }
+    } finally {
+      executor.shutdown();
     }
-    assertFalse(it2.hasNext());
   }
 }
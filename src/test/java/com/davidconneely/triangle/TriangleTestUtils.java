@@ -1,7 +1,5 @@
 package com.davidconneely.triangle;
 
-import java.util.ListIterator;
-
 /**
  * This utility class is only used by the tests. The methods in here are not intended as serious
  * implementations, only to validate other code.
@@ -19,10 +17,10 @@ final class TriangleTestUtils {
     }
     int numPaths = (1 << (t.size() - 1));
     int[] minPath = getPathById(t, 0);
-    int minLen = getPathLen(minPath);
+    long minLen = getPathLen(minPath);
     for (int i = 1; i < numPaths; ++i) {
       int[] path = getPathById(t, i);
-      int len = getPathLen(path);
+      long len = getPathLen(path);
       if (len < minLen) {
         minPath = path;
         minLen = len;
@@ -31,6 +29,28 @@ final class TriangleTestUtils {
     return minPath;
   }
 
+  /**
+   * Find the columns of the leftmost minimal path by the same backward induction as <code>
+   * TrianglePathFinder</code>, but keeping a whole triangle of running totals so the columns can be
+   * read off afterwards.
+   */
+  static int[] findMinPathColumns(Triangle t) {
+    Triangle totals = t.clone();
+    for (int rowNo = t.size() - 2; rowNo >= 0; --rowNo) {
+      for (int colNo = 0; colNo <= rowNo; ++colNo) {
+        int below = Math.min(totals.get(rowNo + 1, colNo), totals.get(rowNo + 1, colNo + 1));
+        totals.set(rowNo, colNo, totals.get(rowNo, colNo) + below);
+      }
+    }
+    int[] columns = new int[t.size()];
+    for (int rowNo = 1; rowNo < columns.length; ++rowNo) {
+      int colNo = columns[rowNo - 1];
+      boolean goRight = totals.get(rowNo, colNo + 1) < totals.get(rowNo, colNo);
+      columns[rowNo] = goRight ? colNo + 1 : colNo;
+    }
+    return columns;
+  }
+
   /**
    * Return the path through the tree identified by <code>pathId</code>. This path is from the top
    * vertex and then on each following row the path moves either left or right depending on the next
@@ -51,11 +71,8 @@ final class TriangleTestUtils {
       throw new IllegalArgumentException("Triangle out of range");
     }
     int[] path = new int[t.size()];
-    ListIterator<int[]> it = t.firstRowIterator();
     int colNo = 0;
-    int rowNo = 0;
-    while (it.hasNext()) {
-      int[] row = it.next();
+    for (int rowNo = 0; rowNo < path.length; ++rowNo) {
       if (rowNo > 0) {
         // go right if pathId bit rowNo (from left) is set
         // (otherwise left, so prefer left branches initially)
@@ -63,14 +80,14 @@ final class TriangleTestUtils {
           ++colNo;
         }
       }
-      path[rowNo++] = row[colNo];
+      path[rowNo] = t.get(rowNo, colNo);
     }
     return path;
   }
 
   /** Total up the length of a path. */
-  private static int getPathLen(int[] path) {
-    int len = 0;
+  static long getPathLen(int[] path) {
+    long len = 0;
     for (int value : path) {
       len += value;
     }